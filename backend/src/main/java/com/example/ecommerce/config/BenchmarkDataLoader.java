@@ -0,0 +1,356 @@
+package com.example.ecommerce.config;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.ecommerce.id.IdBlockAllocator;
+
+import static com.example.ecommerce.service.UtcDateTimes.utc;
+
+/**
+ * Seeds a production-sized synthetic dataset when the "bench" profile is active. Everything is
+ * derived from {@code app.bench.seed}, the end of the generated period ({@code app.bench.end}) and
+ * the fixed id offset ({@code app.bench.id-offset}), so two runs with the same end produce identical
+ * rows. The end defaults to the start of the current UTC day, which keeps the data recent for the
+ * dashboards and still the same for every run of a day; set it to reproduce an older dataset. Rows
+ * are written with JDBC batches in chunked transactions; see application-bench.properties for the
+ * knobs.
+ *
+ * <p>Distributions: product prices are log-normal, product and customer popularity follow Zipf
+ * laws (a few best sellers and heavy buyers), order volume grows over the period with a diurnal
+ * cycle, basket sizes are geometric, and order/payment states depend on order age.
+ */
+@Component
+@Profile("bench")
+@Order(1) // after DataLoader, which only seeds the admin account into an empty users table
+public class BenchmarkDataLoader implements CommandLineRunner {
+    private static final Logger log = LoggerFactory.getLogger(BenchmarkDataLoader.class);
+    private static final String MARKER_EMAIL = "bench-user-0@bench.local";
+    // BCrypt of "bench123", fixed so that generated users do not differ in their salt between runs
+    private static final String PASSWORD_HASH = "$2a$10$4uCEBLVZb3peu77mK/Ey/.6WWnBht0AXpy9PfEbbERpkjfVzE4aSK";
+
+    private static final String[] BRANDS = {"Voltix", "Nimbus", "Arcwave", "Zentro", "Kairo", "Lumina", "Quanta", "Helix",
+            "Orbit", "Pulse", "Vertex", "Nova"};
+    private static final String[] CATEGORIES = {"Smartphone", "Laptop", "Wireless Headphones", "Smart Watch", "Tablet",
+            "Bluetooth Speaker", "Monitor", "Keyboard", "Mouse", "Camera", "Router", "Power Bank", "Earbuds",
+            "Gaming Console", "Drone", "Projector"};
+    private static final String[] ADJECTIVES = {"Pro", "Max", "Lite", "Ultra", "Mini", "Plus", "Air", "Neo"};
+    private static final String[] FIRST_NAMES = {"Aarav", "Diya", "Liam", "Emma", "Noah", "Olivia", "Arjun", "Sara",
+            "Mateo", "Mia", "Kabir", "Zoe", "Ravi", "Ana", "Leo", "Ira"};
+    private static final String[] LAST_NAMES = {"Sharma", "Smith", "Patel", "Garcia", "Khan", "Müller", "Rossi", "Silva",
+            "Nair", "Brown", "Kim", "Singh"};
+    // Relative order volume per hour of day
+    private static final double[] HOURLY_WEIGHT = {1, 0.6, 0.4, 0.3, 0.3, 0.5, 1, 2, 3, 4, 4.5, 5, 5.5, 5, 4.5, 4.5,
+            5, 5.5, 6, 7, 7.5, 6.5, 4, 2};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdBlockAllocator idBlockAllocator;
+
+    @Value("${app.bench.seed:42}")
+    private long seed;
+    @Value("${app.bench.users:10000}")
+    private int userCount;
+    @Value("${app.bench.products:20000}")
+    private int productCount;
+    @Value("${app.bench.orders:100000}")
+    private int orderCount;
+    @Value("${app.bench.carts:2000}")
+    private int cartCount;
+    @Value("${app.bench.days:365}")
+    private int days;
+    @Value("${app.bench.batch-size:5000}")
+    private int batchSize;
+    // blank: the start of the current UTC day
+    @Value("${app.bench.end:}")
+    private String endInstant;
+    // generated rows of every table take ids id-offset + 1, id-offset + 2, ...
+    @Value("${app.bench.id-offset:10000000}")
+    private long idOffset;
+
+    public BenchmarkDataLoader(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               IdBlockAllocator idBlockAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idBlockAllocator = idBlockAllocator;
+    }
+
+    @Override
+    public void run(String... args) {
+        Integer existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE email = ?", Integer.class, MARKER_EMAIL);
+        if (existing != null && existing > 0) {
+            log.info("Benchmark dataset already present, skipping generation");
+            return;
+        }
+        for (String table : new String[]{"users", "products", "orders", "order_items", "cart_items"}) {
+            Integer taken = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE id > ?", Integer.class, idOffset);
+            if (taken != null && taken > 0) {
+                throw new IllegalStateException(table + " already has ids above app.bench.id-offset=" + idOffset);
+            }
+        }
+        long started = System.nanoTime();
+        Instant end = endInstant.isBlank() ? Instant.now().truncatedTo(ChronoUnit.DAYS) : Instant.parse(endInstant);
+        log.info("Generating benchmark dataset for the {} days up to {}", days, end);
+        Instant start = end.minus(Duration.ofDays(days));
+        SplittableRandom random = new SplittableRandom(seed);
+
+        long firstId = idOffset + 1;
+        generateUsers(random.split(), firstId, start, end);
+        long[] priceCents = generateProducts(random.split(), firstId, start, end);
+        generateOrders(random.split(), firstId, firstId, priceCents, start, end);
+        generateCarts(random.split(), firstId, firstId);
+
+        log.info("Benchmark dataset generated in {} s", (System.nanoTime() - started) / 1_000_000_000);
+    }
+
+    private void generateUsers(SplittableRandom random, long firstId, Instant start, Instant end) {
+        BatchWriter users = new BatchWriter("users",
+                "INSERT INTO users (id, name, email, password_hash, role, created_at) VALUES (?, ?, ?, ?, ?, ?)");
+        for (int i = 0; i < userCount; i++) {
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            users.add(firstId + i, name, "bench-user-" + i + "@bench.local", PASSWORD_HASH, "ROLE_USER",
+                    utc(uniformInstant(random, start, end)));
+        }
+        users.finish();
+    }
+
+    private long[] generateProducts(SplittableRandom random, long firstId, Instant start, Instant end) {
+        long[] priceCents = new long[productCount];
+        BatchWriter products = new BatchWriter("products",
+                "INSERT INTO products (id, name, description, price, image_url, stock, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)");
+        for (int i = 0; i < productCount; i++) {
+            String brand = BRANDS[random.nextInt(BRANDS.length)];
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            String name = brand + " " + category + " " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + (100 + i % 900);
+            // log-normal around ~80 with a long tail, clamped to 5..5000
+            double price = Math.min(5000, Math.max(5, Math.exp(Math.log(80) + gaussian(random))));
+            priceCents[i] = Math.round(price * 100);
+            int stock = random.nextInt(20) == 0 ? 0 : random.nextInt(500);
+            String description = brand + " " + category.toLowerCase() + " with " + (2 + random.nextInt(30))
+                    + "-hour battery life, " + (1 + random.nextInt(4)) + "-year warranty and fast charging. "
+                    + "Model " + i + ", built for everyday use.";
+            products.add(firstId + i, name, description, BigDecimal.valueOf(priceCents[i], 2),
+                    "https://picsum.photos/seed/bench" + i + "/800/600", stock, utc(uniformInstant(random, start, end)));
+        }
+        products.finish();
+        return priceCents;
+    }
+
+    private void generateOrders(SplittableRandom random, long firstUserId, long firstProductId, long[] priceCents,
+                                Instant start, Instant end) {
+        ZipfSampler productPopularity = new ZipfSampler(productCount, 1.1);
+        ZipfSampler customerActivity = new ZipfSampler(userCount, 0.8);
+        long[] userRank = shuffledRanks(random, userCount);
+        long[] productRank = shuffledRanks(random, productCount);
+        long firstOrderId = idOffset + 1;
+        long itemId = idOffset;
+
+        BatchWriter orders = new BatchWriter("orders",
+                "INSERT INTO orders (id, user_id, total_amount, status, payment_method, payment_status, created_at) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)");
+        BatchWriter items = new BatchWriter("order_items",
+                "INSERT INTO order_items (id, order_id, product_id, quantity, price_at_purchase) VALUES (?, ?, ?, ?, ?)");
+        orders.attach(items);
+        for (int i = 0; i < orderCount; i++) {
+            long orderId = firstOrderId + i;
+            long userId = firstUserId + userRank[customerActivity.sample(random)];
+            Instant createdAt = orderInstant(random, start, end);
+
+            int lines = 1;
+            while (lines < 20 && random.nextDouble() < 0.45) lines++;
+            long totalCents = 0;
+            long[] seen = new long[lines];
+            for (int l = 0; l < lines; l++) {
+                int product = (int) productRank[productPopularity.sample(random)];
+                if (contains(seen, l, product + 1L)) continue;
+                seen[l] = product + 1L;
+                double q = random.nextDouble();
+                int quantity = q < 0.8 ? 1 : q < 0.95 ? 2 : 3;
+                totalCents += priceCents[product] * quantity;
+                items.add(++itemId, orderId, firstProductId + product, quantity, BigDecimal.valueOf(priceCents[product], 2));
+            }
+
+            String paymentMethod = random.nextDouble() < 0.6 ? "RAZORPAY" : "COD";
+            String status = status(random, Duration.between(createdAt, end).toDays(), paymentMethod);
+            orders.add(orderId, userId, BigDecimal.valueOf(totalCents, 2), status, paymentMethod,
+                    paymentStatus(random, status, paymentMethod), utc(createdAt));
+        }
+        orders.finish();
+        idBlockAllocator.advancePast(IdBlockAllocator.ORDERS, firstOrderId + orderCount - 1);
+        idBlockAllocator.advancePast(IdBlockAllocator.ORDER_ITEMS, itemId);
+    }
+
+    private void generateCarts(SplittableRandom random, long firstUserId, long firstProductId) {
+        ZipfSampler productPopularity = new ZipfSampler(productCount, 1.1);
+        long id = idOffset;
+        BatchWriter carts = new BatchWriter("cart_items",
+                "INSERT INTO cart_items (id, user_id, product_id, quantity) VALUES (?, ?, ?, ?)");
+        int users = Math.min(cartCount, userCount);
+        for (int u = 0; u < users; u++) {
+            int lines = 1 + random.nextInt(5);
+            long[] seen = new long[lines];
+            for (int l = 0; l < lines; l++) {
+                int product = productPopularity.sample(random);
+                if (contains(seen, l, product + 1L)) continue;
+                seen[l] = product + 1L;
+                carts.add(++id, firstUserId + u, firstProductId + product, 1 + random.nextInt(3));
+            }
+        }
+        carts.finish();
+        idBlockAllocator.advancePast(IdBlockAllocator.CART_ITEMS, id);
+    }
+
+    private static String status(SplittableRandom random, long ageDays, String paymentMethod) {
+        double r = random.nextDouble();
+        if (ageDays < 2) {
+            if (r < 0.1) return "CANCELED";
+            return "RAZORPAY".equals(paymentMethod) && r < 0.3 ? "PENDING" : "PLACED";
+        }
+        if (ageDays < 7) {
+            return r < 0.4 ? "SHIPPED" : r < 0.8 ? "DELIVERED" : r < 0.9 ? "PAID" : "CANCELED";
+        }
+        return r < 0.8 ? "DELIVERED" : r < 0.9 ? "CANCELED" : r < 0.95 ? "SHIPPED" : "PAID";
+    }
+
+    private static String paymentStatus(SplittableRandom random, String status, String paymentMethod) {
+        if ("PENDING".equals(status)) return "PENDING";
+        if ("CANCELED".equals(status)) return "RAZORPAY".equals(paymentMethod) && random.nextBoolean() ? "FAILED" : "PENDING";
+        if ("COD".equals(paymentMethod)) return "DELIVERED".equals(status) ? "PAID" : "PENDING";
+        return "PAID";
+    }
+
+    /** Order times grow linearly in volume over the period and follow the hourly weights within a day. */
+    private Instant orderInstant(SplittableRandom random, Instant start, Instant end) {
+        // inverse CDF of a density rising from 1 to 3 across the period
+        double u = random.nextDouble();
+        double x = (-1 + Math.sqrt(1 + 8 * u)) / 2;
+        long day = Math.min(days - 1, (long) (x * days));
+        double total = Arrays.stream(HOURLY_WEIGHT).sum();
+        double pick = random.nextDouble() * total;
+        int hour = 0;
+        while (hour < 23 && (pick -= HOURLY_WEIGHT[hour]) > 0) hour++;
+        Instant instant = start.plus(Duration.ofDays(day)).plus(Duration.ofHours(hour))
+                .plusSeconds(random.nextInt(3600));
+        return instant.isAfter(end) ? end : instant;
+    }
+
+    private static Instant uniformInstant(SplittableRandom random, Instant start, Instant end) {
+        return start.plusSeconds(random.nextLong(Math.max(1, Duration.between(start, end).getSeconds())));
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static long[] shuffledRanks(SplittableRandom random, int n) {
+        long[] ranks = new long[n];
+        for (int i = 0; i < n; i++) ranks[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long tmp = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = tmp;
+        }
+        return ranks;
+    }
+
+    private static boolean contains(long[] values, int length, long value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    /** Samples ranks 0..n-1 with probability proportional to 1/(rank+1)^s. */
+    private static final class ZipfSampler {
+        private final double[] cdf;
+
+        ZipfSampler(int n, double s) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, s);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < n; i++) cdf[i] /= sum;
+        }
+
+        int sample(SplittableRandom random) {
+            int idx = Arrays.binarySearch(cdf, random.nextDouble());
+            idx = idx < 0 ? -idx - 1 : idx;
+            return Math.min(idx, cdf.length - 1);
+        }
+    }
+
+    /**
+     * Buffers rows for one table and writes them in a transaction once a batch fills up. A child
+     * writer (order items of buffered orders) is flushed in the same transaction, after its parent.
+     */
+    private final class BatchWriter {
+        private final String table;
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>();
+        private BatchWriter child;
+        private boolean deferred;
+        private long written;
+        private final long started = System.nanoTime();
+
+        BatchWriter(String table, String sql) {
+            this.table = table;
+            this.sql = sql;
+        }
+
+        void attach(BatchWriter child) {
+            this.child = child;
+            child.deferred = true;
+        }
+
+        void add(Object... row) {
+            rows.add(row);
+            if (!deferred && rows.size() >= batchSize) flush();
+        }
+
+        void finish() {
+            flush();
+            log.info("Generated {} {} rows", written, table);
+            if (child != null) log.info("Generated {} {} rows", child.written, child.table);
+        }
+
+        private void flush() {
+            if (rows.isEmpty()) return;
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(sql, rows);
+                if (child != null && !child.rows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(child.sql, child.rows);
+                    child.written += child.rows.size();
+                    child.rows.clear();
+                }
+            });
+            long before = written;
+            written += rows.size();
+            rows.clear();
+            if (written / 100_000 != before / 100_000) {
+                long elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+                log.info("{}: {} rows ({} rows/s)", table, written, written * 1000 / elapsedMs);
+            }
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package com.example.ecommerce.config;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.example.ecommerce.model.Product;
 import com.example.ecommerce.model.User;
 import com.example.ecommerce.repository.ProductRepository;
 import com.example.ecommerce.repository.UserRepository;
+import com.example.ecommerce.service.ProductCsvImporter;
 
 @Configuration
 public class DataLoader {
+    private static final Logger log = LoggerFactory.getLogger(DataLoader.class);
+
     @Bean
-    CommandLineRunner init(ProductRepository productRepository, UserRepository userRepository, PasswordEncoder encoder) {
+    @Order(0)
+    CommandLineRunner init(ProductRepository productRepository, UserRepository userRepository, PasswordEncoder encoder,
+                           ProductCsvImporter importer, ResourceLoader resourceLoader,
+                           @Value("${app.products.csv-path:}") String csvPath,
+                           @Value("${app.products.replace:false}") boolean replace) {
         return args -> {
             if (userRepository.count() == 0) {
                 User admin = new User();
@@ -26,6 +42,18 @@ public class DataLoader {
                 userRepository.save(admin);
             }
 
+            Resource csv = csvPath.isBlank() ? null : resourceLoader.getResource(csvPath);
+            if (csv != null && csv.exists() && (replace || productRepository.count() == 0)) {
+                if (replace) {
+                    log.info("Removed {} unreferenced products before import", importer.deleteUnreferencedProducts());
+                }
+                try (Reader reader = new InputStreamReader(csv.getInputStream(), StandardCharsets.UTF_8)) {
+                    importer.importCsv(reader);
+                }
+            } else if (csv != null && !csv.exists()) {
+                log.info("Product CSV {} not found, skipping import", csvPath);
+            }
+
             if (productRepository.count() == 0) {
                 Product p1 = new Product();
                 p1.setName("Smartphone X");
@@ -0,0 +1,47 @@
+package com.example.ecommerce.config;
+
+import com.example.ecommerce.id.IdBlockAllocator;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Connection pools. All connect with the spring.datasource settings; each pool is tuned through
+ * its own hikari prefix.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /** Pool of {@link IdBlockAllocator}, kept apart so claiming ids never waits on the main pool. */
+    @Bean
+    @ConfigurationProperties("app.ids.datasource.hikari")
+    public HikariDataSource idAllocatorDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Pool of the admin exports, which hold a connection for as long as a download runs; its
+     * connections read through server-side cursors (see app.export.datasource.hikari.*).
+     */
+    @Bean
+    @ConfigurationProperties("app.export.datasource.hikari")
+    public HikariDataSource exportDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer idBlockAllocatorSetting(IdBlockAllocator idBlockAllocator) {
+        return properties -> properties.put(IdBlockAllocator.SETTING, idBlockAllocator);
+    }
+}
@@ -1,8 +1,19 @@
 package com.example.ecommerce.controller;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,22 +23,64 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.ecommerce.dto.AnalyticsDTO;
-import com.example.ecommerce.model.Order;
+import com.example.ecommerce.dto.OrderSummary;
+import com.example.ecommerce.dto.UserAdminView;
 import com.example.ecommerce.model.Product;
-import com.example.ecommerce.model.User;
 import com.example.ecommerce.service.AdminService;
+import com.example.ecommerce.service.AnalyticsAggregator;
+import com.example.ecommerce.service.BulkOrderStatusService;
+import com.example.ecommerce.service.CartWriteBehindStore;
+import com.example.ecommerce.service.CheckoutBatcher;
+import com.example.ecommerce.service.ExportService;
+import com.example.ecommerce.service.FlashSaleService;
+import com.example.ecommerce.service.OutboxDispatcher;
+import com.example.ecommerce.service.ProductCache;
+import com.example.ecommerce.service.SalesReportService;
+import com.example.ecommerce.service.SalesRollupService;
+import com.example.ecommerce.service.TopSellersTracker;
+import com.example.ecommerce.service.UniqueCustomerTracker;
 
 @RestController
 @RequestMapping("/api/admin")
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
     private final AdminService adminService;
+    private final ProductCache productCache;
+    private final ExportService exportService;
+    private final CartWriteBehindStore cartWriteBehindStore;
+    private final FlashSaleService flashSaleService;
+    private final OutboxDispatcher outboxDispatcher;
+    private final CheckoutBatcher checkoutBatcher;
+    private final BulkOrderStatusService bulkOrderStatusService;
+    private final AnalyticsAggregator analyticsAggregator;
+    private final SalesReportService salesReportService;
+    private final SalesRollupService salesRollupService;
+    private final TopSellersTracker topSellersTracker;
+    private final UniqueCustomerTracker uniqueCustomerTracker;
 
-    public AdminController(AdminService adminService) {
+    public AdminController(AdminService adminService, ProductCache productCache, ExportService exportService,
+                           CartWriteBehindStore cartWriteBehindStore, FlashSaleService flashSaleService,
+                           OutboxDispatcher outboxDispatcher, CheckoutBatcher checkoutBatcher,
+                           BulkOrderStatusService bulkOrderStatusService, AnalyticsAggregator analyticsAggregator,
+                           SalesReportService salesReportService, SalesRollupService salesRollupService,
+                           TopSellersTracker topSellersTracker, UniqueCustomerTracker uniqueCustomerTracker) {
         this.adminService = adminService;
+        this.productCache = productCache;
+        this.exportService = exportService;
+        this.cartWriteBehindStore = cartWriteBehindStore;
+        this.flashSaleService = flashSaleService;
+        this.outboxDispatcher = outboxDispatcher;
+        this.checkoutBatcher = checkoutBatcher;
+        this.bulkOrderStatusService = bulkOrderStatusService;
+        this.analyticsAggregator = analyticsAggregator;
+        this.salesReportService = salesReportService;
+        this.salesRollupService = salesRollupService;
+        this.topSellersTracker = topSellersTracker;
+        this.uniqueCustomerTracker = uniqueCustomerTracker;
     }
 
     // Analytics endpoints
@@ -36,26 +89,212 @@ public class AdminController {
         return adminService.getAnalytics();
     }
 
+    @GetMapping("/analytics/aggregator")
+    public AnalyticsAggregator.Stats getAnalyticsAggregatorStats() {
+        return analyticsAggregator.stats();
+    }
+
+    // Best sellers of the last 1h, 24h or 7d by quantity or revenue, estimated with error bounds
+    @GetMapping("/analytics/top-products")
+    public ResponseEntity<?> getTopProducts(@RequestParam(defaultValue = "24h") String window,
+                                            @RequestParam(defaultValue = "quantity") String by,
+                                            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(topSellersTracker.top(window, by, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/analytics/top-products/stats")
+    public TopSellersTracker.Stats getTopProductsStats() {
+        return topSellersTracker.stats();
+    }
+
+    // Estimated distinct buyers of [from, to) (dates in app.rollup.zone), or of all time without dates
+    @GetMapping("/analytics/customers")
+    public ResponseEntity<?> getUniqueCustomers(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            if (from == null && to == null) return ResponseEntity.ok(uniqueCustomerTracker.allTime());
+            if (from == null || to == null) throw new IllegalArgumentException("from and to are both required, or both left out");
+            return ResponseEntity.ok(uniqueCustomerTracker.between(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/analytics/customers/products/{productId}")
+    public UniqueCustomerTracker.ProductReach getProductReach(@PathVariable Long productId) {
+        return uniqueCustomerTracker.productReach(productId);
+    }
+
+    @GetMapping("/analytics/customers/stats")
+    public UniqueCustomerTracker.Stats getUniqueCustomerStats() {
+        return uniqueCustomerTracker.stats();
+    }
+
+    // Sales reports from the rollup tables: dates are in zone (default app.rollup.zone), to exclusive
+    @GetMapping("/reports/sales")
+    public ResponseEntity<?> getSalesReport(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                            @RequestParam(required = false) String zone,
+                                            @RequestParam(defaultValue = "day") String granularity,
+                                            @RequestParam(required = false) String paymentMethod,
+                                            @RequestParam(required = false) Long productId,
+                                            @RequestParam(defaultValue = "false") boolean byPaymentMethod) {
+        try {
+            return ResponseEntity.ok(salesReportService.sales(from, to, zone, granularity, paymentMethod, productId, byPaymentMethod));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reports/sales/products")
+    public ResponseEntity<?> getProductSalesReport(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                   @RequestParam(required = false) String zone,
+                                                   @RequestParam(required = false) String paymentMethod,
+                                                   @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(salesReportService.productSales(from, to, zone, paymentMethod, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reports/sales/backfill")
+    public SalesRollupService.BackfillStatus getSalesRollupBackfill() {
+        return salesRollupService.backfillStatus();
+    }
+
+    // Rebuilds the rollups of [from, to) in the background; without dates, of all orders
+    @PostMapping("/reports/sales/backfill")
+    public ResponseEntity<?> backfillSalesRollups(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.accepted().body(salesRollupService.startBackfill(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/cache/products")
+    public ProductCache.Stats getProductCacheStats() {
+        return productCache.stats();
+    }
+
+    @GetMapping("/cache/carts")
+    public CartWriteBehindStore.Stats getCartStoreStats() {
+        return cartWriteBehindStore.stats();
+    }
+
+    @GetMapping("/outbox")
+    public OutboxDispatcher.Stats getOutboxStats() {
+        return outboxDispatcher.stats();
+    }
+
+    @GetMapping("/checkout/group-commit")
+    public CheckoutBatcher.Stats getGroupCommitStats() {
+        return checkoutBatcher.stats();
+    }
+
+    // Flash sales: flagged products go through the admission queue at checkout
+    @GetMapping("/flash-sales")
+    public FlashSaleService.Stats getFlashSales() {
+        return flashSaleService.stats();
+    }
+
+    @PostMapping("/flash-sales/{productId}")
+    public ResponseEntity<?> openFlashSale(@PathVariable Long productId) {
+        try {
+            flashSaleService.flag(productId);
+            return ResponseEntity.ok(Map.of("status", "open"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/flash-sales/{productId}")
+    public ResponseEntity<?> closeFlashSale(@PathVariable Long productId) {
+        flashSaleService.unflag(productId);
+        return ResponseEntity.ok(Map.of("status", "closed"));
+    }
+
     // User management endpoints
     @GetMapping("/users")
-    public List<User> getAllUsers() {
+    public List<UserAdminView> getAllUsers() {
         return adminService.getAllUsers();
     }
 
     @PostMapping("/users/{id}/role")
-    public User updateUserRole(@PathVariable Long id, @RequestBody Map<String, String> body) {
+    public UserAdminView updateUserRole(@PathVariable Long id, @RequestBody Map<String, String> body) {
         return adminService.updateUserRole(id, body.getOrDefault("role", "ROLE_USER"));
     }
 
     // Order management endpoints
     @GetMapping("/orders")
-    public List<Order> getAllOrders() {
+    public List<OrderSummary> getAllOrders() {
         return adminService.getAllOrders();
     }
 
+    // Order console: filtered, keyset-paginated summaries (from/to are ISO instants, to exclusive)
+    @GetMapping("/orders/page")
+    public ResponseEntity<?> getOrderPage(@RequestParam(required = false) String status,
+                                          @RequestParam(required = false) String paymentStatus,
+                                          @RequestParam(required = false) String paymentMethod,
+                                          @RequestParam(required = false) Long userId,
+                                          @RequestParam(required = false) String email,
+                                          @RequestParam(required = false) Instant from,
+                                          @RequestParam(required = false) Instant to,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "50") int size) {
+        try {
+            AdminService.OrderFilter filter = new AdminService.OrderFilter(status, paymentStatus, paymentMethod,
+                    userId, email, from, to);
+            return ResponseEntity.ok(adminService.findOrderPage(filter, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PutMapping("/orders/{id}/status")
-    public Order updateOrderStatus(@PathVariable Long id, @RequestBody Map<String, String> body) {
-        return adminService.updateOrderStatus(id, body.get("status"));
+    public ResponseEntity<?> updateOrderStatus(@PathVariable Long id, @RequestBody Map<String, String> body) {
+        try {
+            return ResponseEntity.ok(adminService.updateOrderStatus(id, body.get("status")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    public record BulkStatusRequest(List<Long> orderIds, String status) {}
+
+    // Moves up to 20000 orders to one status; each order's outcome is reported, not just a count
+    @PostMapping("/orders/status")
+    public ResponseEntity<?> updateOrderStatuses(@RequestBody BulkStatusRequest request) {
+        try {
+            return ResponseEntity.ok(bulkOrderStatusService.updateStatus(request.orderIds(), request.status()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Bulk export endpoints: rows are streamed straight to the response
+    @GetMapping("/export/{table}")
+    public void export(@PathVariable String table, @RequestParam(defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        if (!exportService.supports(table)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown export: " + table);
+            return;
+        }
+        ExportService.Format exportFormat = "csv".equalsIgnoreCase(format) ? ExportService.Format.CSV : ExportService.Format.NDJSON;
+        String extension = exportFormat == ExportService.Format.CSV ? "csv" : "ndjson";
+        response.setContentType(exportFormat == ExportService.Format.CSV ? "text/csv" : "application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + table + "." + extension + "\"");
+        exportService.export(table, exportFormat, response.getOutputStream());
     }
 
     // Product management endpoints
@@ -69,6 +308,16 @@ public class AdminController {
         return adminService.createProduct(product);
     }
 
+    @PostMapping(value = "/products/import", consumes = {"text/csv", "text/plain"})
+    public ResponseEntity<?> importProducts(HttpServletRequest request,
+                                            @RequestParam(defaultValue = "false") boolean replace) {
+        try (Reader reader = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)) {
+            return ResponseEntity.ok(adminService.importProducts(reader, replace));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PutMapping("/products/{id}")
     public Product updateProduct(@PathVariable Long id, @RequestBody Product product) {
         return adminService.updateProduct(id, product);
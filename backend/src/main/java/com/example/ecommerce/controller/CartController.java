@@ -2,6 +2,7 @@ package com.example.ecommerce.controller;
 
 import com.example.ecommerce.model.CartItem;
 import com.example.ecommerce.service.CartService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/cart")
@@ -27,8 +29,43 @@ public class CartController {
     public record AddRequest(Long productId, int quantity) {}
 
     @PostMapping("/add")
-    public CartItem add(@AuthenticationPrincipal UserDetails principal, @RequestBody AddRequest req) {
-        return cartService.addToCart(principal.getUsername(), req.productId(), req.quantity());
+    public ResponseEntity<?> add(@AuthenticationPrincipal UserDetails principal, @RequestBody AddRequest req) {
+        try {
+            return ResponseEntity.ok(cartService.addToCart(principal.getUsername(), req.productId(), req.quantity()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    public record BatchOperation(String op, Long productId, Integer quantity) {}
+    public record BatchRequest(List<BatchOperation> operations) {}
+
+    // Applies many line changes in one request and returns the resulting cart
+    @PostMapping("/batch")
+    public ResponseEntity<?> batch(@AuthenticationPrincipal UserDetails principal, @RequestBody BatchRequest req) {
+        try {
+            if (req.operations() == null) throw new IllegalArgumentException("operations is required");
+            List<CartService.CartOperation> operations = req.operations().stream()
+                    .map(o -> new CartService.CartOperation(parseOperation(o.op()), o.productId(), o.quantity()))
+                    .toList();
+            return ResponseEntity.ok(cartService.applyBatch(principal.getUsername(), operations));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static CartService.CartOperationType parseOperation(String op) {
+        if (op == null) throw new IllegalArgumentException("op is required");
+        return switch (op.toLowerCase()) {
+            case "add" -> CartService.CartOperationType.ADD;
+            case "set" -> CartService.CartOperationType.SET;
+            case "remove" -> CartService.CartOperationType.REMOVE;
+            default -> throw new IllegalArgumentException("Unknown op: " + op);
+        };
     }
 
     @DeleteMapping("/remove/{productId}")
@@ -1,7 +1,17 @@
 package com.example.ecommerce.controller;
 
+import com.example.ecommerce.dto.CursorPageDTO;
+import com.example.ecommerce.dto.OrderView;
 import com.example.ecommerce.model.Order;
+import com.example.ecommerce.service.CheckoutBatcher;
+import com.example.ecommerce.service.CheckoutBusyException;
+import com.example.ecommerce.service.FlashSaleBusyException;
+import com.example.ecommerce.service.FlashSaleService;
+import com.example.ecommerce.service.IdempotencyService;
+import com.example.ecommerce.service.InsufficientStockException;
 import com.example.ecommerce.service.OrderService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
@@ -12,20 +22,56 @@ import java.util.List;
 @RequestMapping("/api/orders")
 public class OrderController {
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final CheckoutBatcher checkoutBatcher;
+    private final FlashSaleService flashSaleService;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, IdempotencyService idempotencyService, CheckoutBatcher checkoutBatcher,
+                           FlashSaleService flashSaleService) {
         this.orderService = orderService;
+        this.idempotencyService = idempotencyService;
+        this.checkoutBatcher = checkoutBatcher;
+        this.flashSaleService = flashSaleService;
     }
 
     @GetMapping
-    public List<Order> myOrders(@AuthenticationPrincipal UserDetails principal) {
+    public List<OrderView> myOrders(@AuthenticationPrincipal UserDetails principal) {
         return orderService.listMyOrders(principal.getUsername());
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<?> myOrdersPage(@AuthenticationPrincipal UserDetails principal,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "10") int size) {
+        try {
+            CursorPageDTO<OrderView> page = orderService.listMyOrdersPage(principal.getUsername(), cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/place")
-    public Order place(@AuthenticationPrincipal UserDetails principal, @RequestBody(required = false) java.util.Map<String, String> body) {
+    public ResponseEntity<?> place(@AuthenticationPrincipal UserDetails principal,
+                                   @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                   @RequestBody(required = false) java.util.Map<String, String> body) {
         String paymentMethod = (body != null && body.containsKey("paymentMethod")) ? body.get("paymentMethod") : "COD";
-        return orderService.placeOrder(principal.getUsername(), paymentMethod);
+        return idempotencyService.execute("order-place", principal.getUsername(), idempotencyKey, body, () -> {
+            try {
+                // admitted before checkout takes a connection; the units go back if it fails
+                return ResponseEntity.ok(flashSaleService.withAdmission(principal.getUsername(),
+                        admission -> checkoutBatcher.placeOrder(principal.getUsername(), paymentMethod, admission)));
+            } catch (InsufficientStockException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(java.util.Map.of("error", e.getMessage(), "productId", e.getProductId()));
+            } catch (FlashSaleBusyException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(java.util.Map.of("error", e.getMessage(), "productId", e.getProductId()));
+            } catch (CheckoutBusyException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(java.util.Map.of("error", e.getMessage()));
+            }
+        });
     }
 
     @GetMapping("/track/{id}")
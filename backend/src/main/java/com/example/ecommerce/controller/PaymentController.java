@@ -5,15 +5,18 @@ import java.util.Map;
 
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.ecommerce.model.Order;
+import com.example.ecommerce.service.IdempotencyService;
 import com.example.ecommerce.service.OrderService;
 import com.example.ecommerce.service.PaymentService;
 import com.razorpay.RazorpayException;
@@ -23,12 +26,15 @@ import com.razorpay.RazorpayException;
 public class PaymentController {
     private final PaymentService paymentService;
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
     private final String razorpayKeyId;
 
     public PaymentController(PaymentService paymentService, OrderService orderService,
+                            IdempotencyService idempotencyService,
                             @Value("${razorpay.key.id}") String razorpayKeyId) {
         this.paymentService = paymentService;
         this.orderService = orderService;
+        this.idempotencyService = idempotencyService;
         this.razorpayKeyId = razorpayKeyId;
     }
 
@@ -51,9 +57,22 @@ public class PaymentController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid amount format"));
             }
             
+            Long orderDbId;
+            try {
+                orderDbId = Long.parseLong(String.valueOf(request.get("orderId")));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Missing or invalid orderId"));
+            }
+
             String receipt = "receipt_" + System.currentTimeMillis();
             
             com.razorpay.Order rzOrder = paymentService.createRazorpayOrder(amount, receipt);
+            // only payments made against this Razorpay order can pay the order
+            try {
+                orderService.attachRazorpayOrder(orderDbId, principal.getUsername(), rzOrder.get("id"));
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+            }
             
             // Convert Razorpay order to JSONObject for safe extraction
             JSONObject orderJson = rzOrder.toJson();
@@ -76,7 +95,13 @@ public class PaymentController {
 
     @PostMapping("/verify")
     public ResponseEntity<?> verifyPayment(@AuthenticationPrincipal UserDetails principal,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                            @RequestBody Map<String, String> request) {
+        return idempotencyService.execute("payment-verify", principal.getUsername(), idempotencyKey, request,
+                () -> verify(principal, request));
+    }
+
+    private ResponseEntity<?> verify(UserDetails principal, Map<String, String> request) {
         try {
             String orderId = request.get("razorpayOrderId");
             String paymentId = request.get("razorpayPaymentId");
@@ -107,19 +132,36 @@ public class PaymentController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid orderId format"));
             }
             
+            Order order = orderService.findById(orderDbId);
+            if (!order.getUser().getEmail().equals(principal.getUsername())) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Order not found"));
+            }
+            // a retry of a verification that already went through: no need to check the HMAC or save again
+            if ("PAID".equals(order.getPaymentStatus()) && paymentId.equals(order.getRazorpayPaymentId())
+                    && signature.equals(order.getRazorpaySignature())) {
+                return ResponseEntity.ok(Map.of("status", "success", "message", "Payment verified successfully"));
+            }
+
             boolean isValid = paymentService.verifyPayment(orderId, paymentId, signature);
             
             if (isValid) {
-                Order order = orderService.findById(orderDbId);
-                order.setPaymentStatus("PAID");
-                order.setStatus("PLACED");
-                order.setRazorpayOrderId(orderId);
-                order.setRazorpayPaymentId(paymentId);
-                order.setRazorpaySignature(signature);
-                orderService.saveOrder(order);
-                
+                try {
+                    orderService.markPaid(orderDbId, principal.getUsername(), orderId, paymentId, signature);
+                } catch (IllegalStateException e) {
+                    // the buyer paid for this very order, which was canceled or moved on meanwhile: give it back
+                    boolean refunded = refund(paymentId);
+                    if (!refunded) orderService.flagPaymentReview(orderDbId, paymentId);
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", "rejected",
+                            "message", e.getMessage(), "refunded", refunded));
+                } catch (IllegalArgumentException e) {
+                    // a real payment, but not made for this order: leave it to an admin to settle
+                    orderService.flagPaymentReview(orderDbId, paymentId);
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", "rejected",
+                            "message", e.getMessage(), "refunded", false));
+                }
                 return ResponseEntity.ok(Map.of("status", "success", "message", "Payment verified successfully"));
             } else {
+                orderService.markPaymentFailed(orderDbId, principal.getUsername());
                 return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "Payment verification failed"));
             }
         } catch (Exception e) {
@@ -127,5 +169,14 @@ public class PaymentController {
             return ResponseEntity.badRequest().body(Map.of("error", "Verification error: " + e.getMessage()));
         }
     }
-}
 
+    private boolean refund(String paymentId) {
+        try {
+            paymentService.refundPayment(paymentId);
+            return true;
+        } catch (RazorpayException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
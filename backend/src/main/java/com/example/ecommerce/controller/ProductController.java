@@ -1,12 +1,18 @@
 package com.example.ecommerce.controller;
 
+import com.example.ecommerce.dto.CursorPageDTO;
+import com.example.ecommerce.dto.ProductCard;
+import com.example.ecommerce.dto.ProductSearchHit;
+import com.example.ecommerce.dto.ProductSuggestion;
 import com.example.ecommerce.model.Product;
 import com.example.ecommerce.service.ProductService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
@@ -20,6 +26,33 @@ public class ProductController {
     @GetMapping
     public List<Product> list() { return productService.findAll(); }
 
+    @GetMapping("/page")
+    public ResponseEntity<?> page(@RequestParam(defaultValue = "newest") String sort,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(defaultValue = "24") int size,
+                                  @RequestParam(required = false) BigDecimal minPrice,
+                                  @RequestParam(required = false) BigDecimal maxPrice,
+                                  @RequestParam(defaultValue = "false") boolean inStock) {
+        try {
+            CursorPageDTO<ProductCard> page = productService.findPage(sort, cursor, size, minPrice, maxPrice, inStock);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/search")
+    public List<ProductSearchHit> search(@RequestParam("q") String query,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        return productService.search(query, limit);
+    }
+
+    @GetMapping("/suggest")
+    public List<ProductSuggestion> suggest(@RequestParam("q") String prefix,
+                                           @RequestParam(defaultValue = "10") int limit) {
+        return productService.suggest(prefix, limit);
+    }
+
     @GetMapping("/{id}")
     public Product get(@PathVariable Long id) { return productService.findById(id); }
 
@@ -12,6 +12,11 @@ public class AnalyticsDTO {
     private BigDecimal totalRevenue;
     private long pendingOrders;
     private long completedOrders;
+
+    // Distinct buyers of all time, estimated
+    private long uniqueCustomers;
+    private long returningCustomers;
+    private double repeatPurchaseRate;
     
     // Sales data for charts
     private List<DailySalesData> dailySales;
@@ -38,6 +43,15 @@ public class AnalyticsDTO {
     public long getCompletedOrders() { return completedOrders; }
     public void setCompletedOrders(long completedOrders) { this.completedOrders = completedOrders; }
     
+    public long getUniqueCustomers() { return uniqueCustomers; }
+    public void setUniqueCustomers(long uniqueCustomers) { this.uniqueCustomers = uniqueCustomers; }
+    
+    public long getReturningCustomers() { return returningCustomers; }
+    public void setReturningCustomers(long returningCustomers) { this.returningCustomers = returningCustomers; }
+    
+    public double getRepeatPurchaseRate() { return repeatPurchaseRate; }
+    public void setRepeatPurchaseRate(double repeatPurchaseRate) { this.repeatPurchaseRate = repeatPurchaseRate; }
+    
     public List<DailySalesData> getDailySales() { return dailySales; }
     public void setDailySales(List<DailySalesData> dailySales) { this.dailySales = dailySales; }
     
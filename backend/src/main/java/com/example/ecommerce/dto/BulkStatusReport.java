@@ -0,0 +1,15 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk order status change. {@code results} follows the requested order ids; each
+ * outcome is UPDATED, UNCHANGED (already in the target status), INVALID_TRANSITION, NOT_FOUND or
+ * FAILED (its chunk could not be written).
+ */
+public record BulkStatusReport(String status, int requested, int updated, int unchanged, int rejected, int notFound, int failed,
+                               long elapsedMs, List<Result> results) {
+
+    public record Result(Long orderId, String outcome, String previousStatus) {
+    }
+}
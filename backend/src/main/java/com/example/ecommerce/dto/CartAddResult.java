@@ -0,0 +1,13 @@
+package com.example.ecommerce.dto;
+
+import com.example.ecommerce.model.CartItem;
+
+/**
+ * Outcome of adding to the cart: the line as stored, the units asked for and the units actually
+ * added. {@code capped} is set when the line hit the product's stock and fewer units were added.
+ */
+public record CartAddResult(CartItem item, int requested, int added, boolean capped) {
+    public CartAddResult(CartItem item, int requested, int added) {
+        this(item, requested, added, added < requested);
+    }
+}
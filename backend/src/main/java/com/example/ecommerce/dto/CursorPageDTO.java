@@ -0,0 +1,10 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. {@code nextCursor} is opaque to clients and
+ * is null on the last page.
+ */
+public record CursorPageDTO<T>(List<T> items, String nextCursor) {
+}
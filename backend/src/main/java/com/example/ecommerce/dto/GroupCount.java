@@ -0,0 +1,4 @@
+package com.example.ecommerce.dto;
+
+public record GroupCount(String key, Long count) {
+}
@@ -0,0 +1,7 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+public record ImportReport(long rowsRead, long imported, long rejected, List<String> errors,
+                           long elapsedMs, double rowsPerSecond) {
+}
@@ -0,0 +1,10 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/** One order line joined with its order header, as selected by the order history query. */
+public record OrderLineRow(Long orderId, String status, String paymentMethod, String paymentStatus,
+                           BigDecimal totalAmount, Instant createdAt, Long itemId, Long productId,
+                           String productName, String productImageUrl, Integer quantity, BigDecimal priceAtPurchase) {
+}
@@ -0,0 +1,21 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Admin order table row. The flat constructor is the target of the JPQL constructor
+ * expression; the buyer is nested so the JSON matches the entity's {@code user} shape.
+ */
+public record OrderSummary(Long id, UserRef user, BigDecimal totalAmount, String status, String paymentMethod,
+                           String paymentStatus, Instant createdAt, long itemCount) {
+
+    public record UserRef(Long id, String name, String email) {
+    }
+
+    public OrderSummary(Long id, Long userId, String userName, String userEmail, BigDecimal totalAmount,
+                        String status, String paymentMethod, String paymentStatus, Instant createdAt, Long itemCount) {
+        this(id, new UserRef(userId, userName, userEmail), totalAmount, status, paymentMethod, paymentStatus,
+                createdAt, itemCount == null ? 0 : itemCount);
+    }
+}
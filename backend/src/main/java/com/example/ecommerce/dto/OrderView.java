@@ -0,0 +1,38 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Customer-facing order with its lines. Products are reduced to the fields the order pages
+ * display, under the same {@code product} key the entity serialization used.
+ */
+public record OrderView(Long id, String status, String paymentMethod, String paymentStatus,
+                        BigDecimal totalAmount, Instant createdAt, List<Line> items) {
+
+    public record Line(Long id, ProductRef product, Integer quantity, BigDecimal priceAtPurchase) {
+    }
+
+    public record ProductRef(Long id, String name, String imageUrl) {
+    }
+
+    /** Groups rows ordered by order into views, keeping the row order. */
+    public static List<OrderView> fromRows(List<OrderLineRow> rows) {
+        List<OrderView> views = new ArrayList<>();
+        OrderView current = null;
+        for (OrderLineRow row : rows) {
+            if (current == null || !current.id().equals(row.orderId())) {
+                current = new OrderView(row.orderId(), row.status(), row.paymentMethod(), row.paymentStatus(),
+                        row.totalAmount(), row.createdAt(), new ArrayList<>());
+                views.add(current);
+            }
+            if (row.itemId() != null) {
+                current.items().add(new Line(row.itemId(), new ProductRef(row.productId(), row.productName(),
+                        row.productImageUrl()), row.quantity(), row.priceAtPurchase()));
+            }
+        }
+        return views;
+    }
+}
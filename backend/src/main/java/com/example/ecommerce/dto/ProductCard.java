@@ -0,0 +1,8 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/** Catalog listing row: everything a product card shows, without the description. */
+public record ProductCard(Long id, String name, BigDecimal price, String imageUrl, Integer stock, Instant createdAt) {
+}
@@ -0,0 +1,4 @@
+package com.example.ecommerce.dto;
+
+public record ProductSalesCount(Long productId, Long quantity) {
+}
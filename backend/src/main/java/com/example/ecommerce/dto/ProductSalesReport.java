@@ -0,0 +1,16 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Best-selling products by revenue over the dates [from, to) in {@code zone}. {@code orders}
+ * counts the orders that contained the product.
+ */
+public record ProductSalesReport(String zone, LocalDate from, LocalDate to, String source, String paymentMethod,
+                                 List<Line> products) {
+
+    public record Line(Long productId, String name, long orders, long units, BigDecimal revenue) {
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+public record ProductSalesTotal(Long productId, Long quantity, BigDecimal revenue) {
+}
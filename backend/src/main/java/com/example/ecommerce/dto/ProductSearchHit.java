@@ -0,0 +1,6 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+public record ProductSearchHit(Long id, String name, BigDecimal price, String imageUrl, double score) {
+}
@@ -0,0 +1,4 @@
+package com.example.ecommerce.dto;
+
+public record ProductSuggestion(Long id, String name) {
+}
@@ -0,0 +1,17 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Sales over the dates [from, to) in {@code zone}, one point per hour, day or month that had
+ * sales (split by payment method when asked). {@code source} names the rollup table read.
+ */
+public record SalesReport(String zone, LocalDate from, LocalDate to, String granularity, String source,
+                          String paymentMethod, Long productId, List<Point> points) {
+
+    public record Point(LocalDateTime start, String paymentMethod, long orders, long units, BigDecimal revenue) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Best-selling products by quantity or revenue since {@code since}, estimated from bounded
+ * sketches. Each {@code estimate} is at most {@code estimate - lowerBound} above the true figure,
+ * and no product left out sold more than {@code maxUnlisted}. {@code guaranteed} marks products
+ * whose lower bound beats every product left out.
+ */
+public record TopSellers(String window, String metric, Instant since, BigDecimal total, BigDecimal maxUnlisted,
+                         int capacity, List<Item> items) {
+
+    public record Item(Long productId, String name, BigDecimal estimate, BigDecimal lowerBound, boolean guaranteed) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.ecommerce.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Estimated distinct buyers over the dates [from, to) in {@code zone}, or of all time when the
+ * dates are null. {@code returningCustomers} placed at least one order that was not their first;
+ * {@code standardError} is the relative error of the estimates. {@code complete} is false while
+ * the sketches are still being built from past orders.
+ */
+public record UniqueCustomers(String zone, LocalDate from, LocalDate to, long customers, long returningCustomers,
+                              double repeatPurchaseRate, double standardError, boolean complete) {
+}
@@ -0,0 +1,6 @@
+package com.example.ecommerce.dto;
+
+import java.time.Instant;
+
+public record UserAdminView(Long id, String name, String email, String role, Instant createdAt) {
+}
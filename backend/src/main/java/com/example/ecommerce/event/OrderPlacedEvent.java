@@ -0,0 +1,33 @@
+package com.example.ecommerce.event;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderItem;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Written to the outbox by OrderService with the order, and delivered to listeners by
+ * OutboxDispatcher after the order has committed, at least once. Carries only ids and values so
+ * listeners never touch the order's persistence context.
+ */
+public record OrderPlacedEvent(Long orderId, Long userId, String status, String paymentMethod,
+                               String paymentStatus, BigDecimal totalAmount, Instant createdAt,
+                               List<Line> lines) {
+
+    public record Line(Long productId, int quantity, BigDecimal unitPrice) {}
+
+    public static OrderPlacedEvent of(Order order) {
+        List<Line> lines = order.getItems().stream()
+                .map(OrderPlacedEvent::line)
+                .toList();
+        return new OrderPlacedEvent(order.getId(), order.getUser().getId(), order.getStatus(),
+                order.getPaymentMethod(), order.getPaymentStatus(), order.getTotalAmount(),
+                order.getCreatedAt(), lines);
+    }
+
+    private static Line line(OrderItem item) {
+        return new Line(item.getProduct().getId(), item.getQuantity(), item.getPriceAtPurchase());
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.ecommerce.event;
+
+import com.example.ecommerce.model.Order;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Published by OrderService when an existing order's status or payment status changes, with the
+ * status the order had before.
+ */
+public record OrderStatusChangedEvent(Long orderId, Long userId, String previousStatus, String previousPaymentStatus,
+                                      String status, String paymentStatus, BigDecimal totalAmount, Instant changedAt) {
+
+    public static OrderStatusChangedEvent of(Order order, String previousStatus, String previousPaymentStatus) {
+        return new OrderStatusChangedEvent(order.getId(), order.getUser().getId(), previousStatus, previousPaymentStatus,
+                order.getStatus(), order.getPaymentStatus(), order.getTotalAmount(), Instant.now());
+    }
+}
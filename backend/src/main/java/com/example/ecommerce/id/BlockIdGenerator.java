@@ -0,0 +1,32 @@
+package com.example.ecommerce.id;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+
+/**
+ * Hibernate side of {@link BlockId}. Hibernate creates it reflectively; the allocator bean is
+ * handed to it through the {@link IdBlockAllocator#SETTING} Hibernate property.
+ */
+public class BlockIdGenerator implements IdentifierGenerator {
+    private final String name;
+    private final IdBlockAllocator allocator;
+
+    public BlockIdGenerator(BlockId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.name = config.value();
+        Object allocator = context.getServiceRegistry().requireService(ConfigurationService.class)
+                .getSettings().get(IdBlockAllocator.SETTING);
+        if (!(allocator instanceof IdBlockAllocator)) {
+            throw new IllegalStateException("Hibernate property " + IdBlockAllocator.SETTING + " is not set");
+        }
+        this.allocator = (IdBlockAllocator) allocator;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return allocator.next(name);
+    }
+}
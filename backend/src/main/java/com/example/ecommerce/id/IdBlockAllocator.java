@@ -0,0 +1,110 @@
+package com.example.ecommerce.id;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out ids from the id_generators table, in blocks held in memory: to entities annotated with
+ * {@link BlockId} (orders, order items, cart items and outbox events) and to code that inserts
+ * those rows with plain JDBC. A row holds the first id of the next free block, claimed by bumping it
+ * under a row lock.
+ *
+ * <p>Blocks are claimed over the small {@code idAllocatorDataSource} pool. Ids are needed inside
+ * checkout transactions that hold a stock lock; taking a second connection from the main pool
+ * there could wait forever on requests that hold the other connections while queued for that lock.
+ *
+ * <p>The first time a generator is used, its row is raised above the current maximum id of its
+ * table, which covers databases created while these tables still used AUTO_INCREMENT ids.
+ */
+@Component
+public class IdBlockAllocator {
+    /** Hibernate property through which {@link BlockIdGenerator} finds this bean. */
+    public static final String SETTING = "app.ids.allocator";
+    public static final String TABLE = "id_generators";
+    public static final String ORDERS = "orders";
+    public static final String ORDER_ITEMS = "order_items";
+    public static final String CART_ITEMS = "cart_items";
+    public static final String OUTBOX_EVENTS = "outbox_events";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private final Set<String> synced = ConcurrentHashMap.newKeySet();
+
+    private static final class Block {
+        long next;
+        long end;
+    }
+
+    public IdBlockAllocator(@Qualifier("idAllocatorDataSource") DataSource dataSource,
+                            @Value("${app.ids.block-size:100}") int blockSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.blockSize = blockSize;
+    }
+
+    /** Next id for the generator, served from an in-memory block. */
+    public long next(String name) {
+        Block block = blocks.computeIfAbsent(name, n -> new Block());
+        synchronized (block) {
+            if (block.next >= block.end) {
+                block.next = reserve(name, blockSize);
+                block.end = block.next + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    /** Claims {@code count} consecutive ids in its own transaction and returns the first. */
+    public long reserve(String name, int count) {
+        if (!synced.contains(name)) syncWithTable(name);
+        return transactionTemplate.execute(status -> {
+            Long current = currentValue(name);
+            if (current == null) throw new IllegalStateException("Unknown id generator " + name);
+            jdbcTemplate.update("UPDATE " + TABLE + " SET next_val = ? WHERE name = ?", current + count, name);
+            return current;
+        });
+    }
+
+    /** Moves the generator past {@code lastId}, for rows inserted with ids the caller chose. */
+    public void advancePast(String name, long lastId) {
+        if (!synced.contains(name)) syncWithTable(name);
+        transactionTemplate.executeWithoutResult(status -> {
+            Long current = currentValue(name);
+            if (current == null) throw new IllegalStateException("Unknown id generator " + name);
+            if (current <= lastId) {
+                jdbcTemplate.update("UPDATE " + TABLE + " SET next_val = ? WHERE name = ?", lastId + 1, name);
+            }
+        });
+    }
+
+    // Generator names are the names of the tables they number
+    private synchronized void syncWithTable(String name) {
+        if (synced.contains(name)) return;
+        transactionTemplate.executeWithoutResult(status -> {
+            Long floor = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + name, Long.class);
+            Long current = currentValue(name);
+            if (current == null) {
+                jdbcTemplate.update("INSERT INTO " + TABLE + " (name, next_val) VALUES (?, ?)", name, floor);
+            } else if (current < floor) {
+                jdbcTemplate.update("UPDATE " + TABLE + " SET next_val = ? WHERE name = ?", floor, name);
+            }
+        });
+        synced.add(name);
+    }
+
+    private Long currentValue(String name) {
+        return jdbcTemplate.query("SELECT next_val FROM " + TABLE + " WHERE name = ? FOR UPDATE",
+                rs -> rs.next() ? rs.getLong(1) : null, name);
+    }
+}
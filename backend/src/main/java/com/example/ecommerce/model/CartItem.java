@@ -1,5 +1,7 @@
 package com.example.ecommerce.model;
 
+import com.example.ecommerce.id.BlockId;
+import com.example.ecommerce.id.IdBlockAllocator;
 import jakarta.persistence.*;
 
 @Entity
@@ -8,13 +10,14 @@ import jakarta.persistence.*;
 })
 public class CartItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BlockId(IdBlockAllocator.CART_ITEMS)
     private Long id;
 
     @ManyToOne(optional = false)
     private User user;
 
-    @ManyToOne(optional = false)
+    // Resolved through ProductCache by CartService/OrderService rather than joined on every read
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Product product;
 
     private Integer quantity;
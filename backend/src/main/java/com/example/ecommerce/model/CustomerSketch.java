@@ -0,0 +1,54 @@
+package com.example.ecommerce.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A row of customer_sketches: one serialized HyperLogLog of distinct buyers, identified by kind
+ * (e.g. day buyers in a zone) and key (e.g. the date). Mapped so the table is created with the
+ * schema; UniqueCustomerTracker reads and writes it with plain JDBC.
+ */
+@Entity
+@Table(name = "customer_sketches")
+@IdClass(CustomerSketch.Key.class)
+public class CustomerSketch {
+    @Id
+    @Column(length = 64)
+    private String kind;
+
+    @Id
+    @Column(length = 64)
+    private String sketchKey;
+
+    // HyperLogLog.toBytes(); 12 KB for a dense sketch at precision 14
+    @Lob
+    @Column(nullable = false, length = 65535)
+    private byte[] registers;
+
+    // UTC
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public static class Key implements Serializable {
+        private String kind;
+        private String sketchKey;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(kind, k.kind) && Objects.equals(sketchKey, k.sketchKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, sketchKey);
+        }
+    }
+
+    public String getKind() { return kind; }
+    public String getSketchKey() { return sketchKey; }
+    public byte[] getRegisters() { return registers; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
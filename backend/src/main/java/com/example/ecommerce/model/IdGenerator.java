@@ -0,0 +1,20 @@
+package com.example.ecommerce.model;
+
+import com.example.ecommerce.id.IdBlockAllocator;
+import jakarta.persistence.*;
+
+/** A row of id_generators: the first id of the next free block of one generator, see {@link IdBlockAllocator}. */
+@Entity
+@Table(name = IdBlockAllocator.TABLE)
+public class IdGenerator {
+    @Id
+    private String name;
+
+    @Column(name = "next_val")
+    private Long nextVal;
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public Long getNextVal() { return nextVal; }
+    public void setNextVal(Long nextVal) { this.nextVal = nextVal; }
+}
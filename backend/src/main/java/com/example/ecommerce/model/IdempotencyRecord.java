@@ -0,0 +1,56 @@
+package com.example.ecommerce.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Stored outcome of a request sent with an Idempotency-Key header. Mapped here so the table is
+ * created with the schema; IdempotencyService reads and writes it with plain JDBC.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at")
+})
+public class IdempotencyRecord {
+    // SHA-256 of scope, user and client key
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false, length = 32)
+    private String scope;
+
+    @Column(nullable = false)
+    private String userEmail;
+
+    // SHA-256 of the request body, to reject a key reused for a different request
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    // null while the first request is still running
+    private Integer responseStatus;
+
+    @Lob
+    private String responseBody;
+
+    // set while the first request runs; only the holder may store or drop the response
+    @Column(length = 36)
+    private String claimToken;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // end of the claim's lease while running, end of the retention period once stored
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    public String getId() { return id; }
+    public String getScope() { return scope; }
+    public String getUserEmail() { return userEmail; }
+    public String getRequestHash() { return requestHash; }
+    public Integer getResponseStatus() { return responseStatus; }
+    public String getResponseBody() { return responseBody; }
+    public String getClaimToken() { return claimToken; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+}
@@ -1,5 +1,7 @@
 package com.example.ecommerce.model;
 
+import com.example.ecommerce.id.BlockId;
+import com.example.ecommerce.id.IdBlockAllocator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
@@ -8,10 +10,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_user_created_at_id", columnList = "user_id, created_at, id"),
+        // admin order console: newest first, optionally filtered by one of these columns
+        @Index(name = "idx_orders_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_orders_status_created_at_id", columnList = "status, created_at, id"),
+        @Index(name = "idx_orders_payment_status_created_at_id", columnList = "payment_status, created_at, id"),
+        @Index(name = "idx_orders_payment_method_created_at_id", columnList = "payment_method, created_at, id")
+})
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // blocks from id_generators keep inserts JDBC-batchable (IDENTITY disables batching)
+    @BlockId(IdBlockAllocator.ORDERS)
     private Long id;
 
     @ManyToOne(optional = false)
@@ -32,9 +42,14 @@ public class Order {
 
     private String razorpaySignature;
 
+    // a payment arrived that the order could not take; someone has to settle it by hand
+    @Column(nullable = false)
+    private boolean paymentReview;
+
     private Instant createdAt = Instant.now();
 
-    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    // Lazy: lists use projections, single orders are loaded with OrderRepository.findById's entity graph
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<OrderItem> items = new ArrayList<>();
 
     // Helper methods to manage bidirectional relationship
@@ -70,4 +85,6 @@ public class Order {
     public void setRazorpayPaymentId(String razorpayPaymentId) { this.razorpayPaymentId = razorpayPaymentId; }
     public String getRazorpaySignature() { return razorpaySignature; }
     public void setRazorpaySignature(String razorpaySignature) { this.razorpaySignature = razorpaySignature; }
+    public boolean isPaymentReview() { return paymentReview; }
+    public void setPaymentReview(boolean paymentReview) { this.paymentReview = paymentReview; }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.example.ecommerce.model;
 
+import com.example.ecommerce.id.BlockId;
+import com.example.ecommerce.id.IdBlockAllocator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
@@ -8,14 +10,14 @@ import java.math.BigDecimal;
 @Table(name = "order_items")
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BlockId(IdBlockAllocator.ORDER_ITEMS)
     private Long id;
 
     @ManyToOne(optional = false)
     @JsonIgnore
     private Order order;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Product product;
 
     private Integer quantity;
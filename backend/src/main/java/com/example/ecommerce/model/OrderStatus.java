@@ -0,0 +1,47 @@
+package com.example.ecommerce.model;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Order lifecycle. Orders store the status name; this enum holds the transitions an admin or the
+ * payment flow may make. PENDING is an online-payment order awaiting verification.
+ */
+public enum OrderStatus {
+    PENDING, PLACED, PAID, SHIPPED, DELIVERED, CANCELED;
+
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        TRANSITIONS.put(PENDING, EnumSet.of(PLACED, CANCELED));
+        TRANSITIONS.put(PLACED, EnumSet.of(PAID, SHIPPED, CANCELED));
+        TRANSITIONS.put(PAID, EnumSet.of(SHIPPED, CANCELED));
+        TRANSITIONS.put(SHIPPED, EnumSet.of(DELIVERED));
+        TRANSITIONS.put(DELIVERED, EnumSet.noneOf(OrderStatus.class));
+        TRANSITIONS.put(CANCELED, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    public boolean canBecome(OrderStatus next) {
+        return TRANSITIONS.get(this).contains(next);
+    }
+
+    /** Statuses an order may be in to move to {@code target}. */
+    public static Set<OrderStatus> sourcesOf(OrderStatus target) {
+        Set<OrderStatus> sources = EnumSet.noneOf(OrderStatus.class);
+        TRANSITIONS.forEach((from, targets) -> {
+            if (targets.contains(target)) sources.add(from);
+        });
+        return sources;
+    }
+
+    public static OrderStatus parse(String status) {
+        if (status != null) {
+            for (OrderStatus s : values()) {
+                if (s.name().equals(status.trim().toUpperCase())) return s;
+            }
+        }
+        throw new IllegalArgumentException("Unknown order status: " + status);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.ecommerce.model;
+
+import com.example.ecommerce.id.BlockId;
+import com.example.ecommerce.id.IdBlockAllocator;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A domain event written in the same transaction as the change it describes, and dispatched to
+ * in-process listeners by OutboxDispatcher after commit.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_events_status_available", columnList = "status, available_at"),
+        @Index(name = "idx_outbox_events_claim_token", columnList = "claim_token")
+})
+public class OutboxEvent {
+    @Id
+    @BlockId(IdBlockAllocator.OUTBOX_EVENTS)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String eventType;
+
+    // the order the event belongs to; events of one aggregate are dispatched in id order
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Column(nullable = false, length = 16)
+    private String status = "PENDING"; // PENDING, DONE, FAILED
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant availableAt = Instant.now();
+
+    // set while a dispatcher holds the event, until claimedUntil
+    @Column(length = 36)
+    private String claimToken;
+
+    private Instant claimedUntil;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    private Instant processedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    public Long getAggregateId() { return aggregateId; }
+    public void setAggregateId(Long aggregateId) { this.aggregateId = aggregateId; }
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public Instant getAvailableAt() { return availableAt; }
+    public void setAvailableAt(Instant availableAt) { this.availableAt = availableAt; }
+    public String getClaimToken() { return claimToken; }
+    public void setClaimToken(String claimToken) { this.claimToken = claimToken; }
+    public Instant getClaimedUntil() { return claimedUntil; }
+    public void setClaimedUntil(Instant claimedUntil) { this.claimedUntil = claimedUntil; }
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public Instant getProcessedAt() { return processedAt; }
+    public void setProcessedAt(Instant processedAt) { this.processedAt = processedAt; }
+}
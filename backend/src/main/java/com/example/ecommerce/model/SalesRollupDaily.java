@@ -0,0 +1,63 @@
+package com.example.ecommerce.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * A row of sales_rollup_daily: one date (in {@code app.rollup.zone}) of sales for one payment
+ * method, of one product or (product_id 0) of all products. Mapped so the table is created with
+ * the schema; SalesRollupService reads and writes it with plain JDBC.
+ */
+@Entity
+@Table(name = "sales_rollup_daily", indexes = {
+        @Index(name = "idx_sales_rollup_daily_sales_date", columnList = "sales_date")
+})
+@IdClass(SalesRollupDaily.Key.class)
+public class SalesRollupDaily {
+    @Id
+    private Long productId;
+
+    @Id
+    private LocalDate salesDate;
+
+    @Id
+    @Column(length = 64)
+    private String paymentMethod;
+
+    @Column(nullable = false)
+    private long orders;
+
+    @Column(nullable = false)
+    private long units;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue;
+
+    public static class Key implements Serializable {
+        private Long productId;
+        private LocalDate salesDate;
+        private String paymentMethod;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(productId, k.productId)
+                    && Objects.equals(salesDate, k.salesDate) && Objects.equals(paymentMethod, k.paymentMethod);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(productId, salesDate, paymentMethod);
+        }
+    }
+
+    public Long getProductId() { return productId; }
+    public LocalDate getSalesDate() { return salesDate; }
+    public String getPaymentMethod() { return paymentMethod; }
+    public long getOrders() { return orders; }
+    public long getUnits() { return units; }
+    public BigDecimal getRevenue() { return revenue; }
+}
@@ -0,0 +1,64 @@
+package com.example.ecommerce.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A row of sales_rollup_hourly: one UTC hour of sales for one payment method, of one product or
+ * (product_id 0) of all products. Mapped so the table is created with the schema; SalesRollupService
+ * reads and writes it with plain JDBC.
+ */
+@Entity
+@Table(name = "sales_rollup_hourly", indexes = {
+        @Index(name = "idx_sales_rollup_hourly_bucket_start", columnList = "bucket_start")
+})
+@IdClass(SalesRollupHourly.Key.class)
+public class SalesRollupHourly {
+    @Id
+    private Long productId;
+
+    // start of the hour, UTC
+    @Id
+    private LocalDateTime bucketStart;
+
+    @Id
+    @Column(length = 64)
+    private String paymentMethod;
+
+    @Column(nullable = false)
+    private long orders;
+
+    @Column(nullable = false)
+    private long units;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue;
+
+    public static class Key implements Serializable {
+        private Long productId;
+        private LocalDateTime bucketStart;
+        private String paymentMethod;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(productId, k.productId)
+                    && Objects.equals(bucketStart, k.bucketStart) && Objects.equals(paymentMethod, k.paymentMethod);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(productId, bucketStart, paymentMethod);
+        }
+    }
+
+    public Long getProductId() { return productId; }
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public String getPaymentMethod() { return paymentMethod; }
+    public long getOrders() { return orders; }
+    public long getUnits() { return units; }
+    public BigDecimal getRevenue() { return revenue; }
+}
@@ -0,0 +1,50 @@
+package com.example.ecommerce.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A row of sales_rollup_orders: an order already counted in one grain of the sales rollups, so a
+ * redelivered event is not counted twice. Mapped so the table is created with the schema;
+ * SalesRollupService reads and writes it with plain JDBC.
+ */
+@Entity
+@Table(name = "sales_rollup_orders", indexes = {
+        @Index(name = "idx_sales_rollup_orders_applied_at", columnList = "applied_at")
+})
+@IdClass(SalesRollupOrder.Key.class)
+public class SalesRollupOrder {
+    @Id
+    private Long orderId;
+
+    // H (hourly) or D (daily)
+    @Id
+    @Column(length = 1)
+    private String grain;
+
+    // UTC
+    @Column(nullable = false)
+    private LocalDateTime appliedAt;
+
+    public static class Key implements Serializable {
+        private Long orderId;
+        private String grain;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(orderId, k.orderId) && Objects.equals(grain, k.grain);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(orderId, grain);
+        }
+    }
+
+    public Long getOrderId() { return orderId; }
+    public String getGrain() { return grain; }
+    public LocalDateTime getAppliedAt() { return appliedAt; }
+}
@@ -0,0 +1,28 @@
+package com.example.ecommerce.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row of sales_rollup_state: the zone the sales rollups were last fully rebuilt for, and when.
+ * Mapped so the table is created with the schema; SalesRollupService reads and writes it with
+ * plain JDBC.
+ */
+@Entity
+@Table(name = "sales_rollup_state")
+public class SalesRollupState {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(length = 64)
+    private String zone;
+
+    // UTC
+    private LocalDateTime backfilledAt;
+
+    public String getName() { return name; }
+    public String getZone() { return zone; }
+    public LocalDateTime getBackfilledAt() { return backfilledAt; }
+}
@@ -3,17 +3,41 @@ package com.example.ecommerce.repository;
 import com.example.ecommerce.model.CartItem;
 import com.example.ecommerce.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     List<CartItem> findByUser(User user);
+    List<CartItem> findByUserId(Long userId);
     Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId);
+    Optional<CartItem> findByUserEmailAndProductId(String email, Long productId);
     void deleteByUser(User user);
-}
-
-
-
-
 
+    // Scalar, so the line is not put into the persistence context ahead of a native update. Read under
+    // UserRepository.lockIdByEmail, it is the line as the last edit of the cart left it.
+    @Query("select ci.quantity from CartItem ci where ci.user.email = :email and ci.product.id = :productId")
+    Optional<Integer> findQuantity(@Param("email") String email, @Param("productId") Long productId);
+
+    @Query("select distinct ci.product.id from CartItem ci where ci.user.email in :emails")
+    List<Long> findProductIdsByUserEmails(@Param("emails") Collection<String> emails);
+
+    /**
+     * Adds {@code quantity} units to the user's cart line in one statement, inserting the line if
+     * needed under {@code id} (unused when the line already exists). The unique (user_id, product_id) key serializes concurrent adds on the row lock, so no
+     * increment is lost, and the quantity is capped at the product's stock; a line already above
+     * the stock is left as it is rather than lowered. Returns 0 when the user or product does not
+     * exist or the product is out of stock, and may when the line is left as it was.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO cart_items (id, user_id, product_id, quantity) " +
+            "SELECT :id, u.id, p.id, LEAST(:quantity, p.stock) FROM users u JOIN products p ON p.id = :productId " +
+            "WHERE u.email = :email AND p.stock > 0 " +
+            "ON DUPLICATE KEY UPDATE quantity = GREATEST(cart_items.quantity, LEAST(cart_items.quantity + :quantity, " +
+            "(SELECT s.stock FROM products s WHERE s.id = cart_items.product_id)))", nativeQuery = true)
+    int upsertQuantity(@Param("id") Long id, @Param("email") String email, @Param("productId") Long productId, @Param("quantity") int quantity);
+}
@@ -1,12 +1,19 @@
 package com.example.ecommerce.repository;
 
+import com.example.ecommerce.dto.ProductSalesCount;
+import com.example.ecommerce.dto.ProductSalesTotal;
 import com.example.ecommerce.model.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
-public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
-}
-
-
-
+import java.util.List;
 
+public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+    @Query("select new com.example.ecommerce.dto.ProductSalesCount(oi.product.id, sum(oi.quantity)) " +
+            "from OrderItem oi group by oi.product.id")
+    List<ProductSalesCount> sumQuantityByProduct();
 
+    @Query("select new com.example.ecommerce.dto.ProductSalesTotal(oi.product.id, sum(oi.quantity), " +
+            "sum(oi.priceAtPurchase * oi.quantity)) from OrderItem oi group by oi.product.id")
+    List<ProductSalesTotal> sumSalesByProduct();
+}
@@ -1,11 +1,97 @@
 package com.example.ecommerce.repository;
 
+import com.example.ecommerce.dto.GroupCount;
+import com.example.ecommerce.dto.OrderLineRow;
+import com.example.ecommerce.dto.OrderSummary;
 import com.example.ecommerce.model.Order;
-import com.example.ecommerce.model.User;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUserOrderByCreatedAtDesc(User user);
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderSummaryQueries {
+    String LINE_ROW = "select new com.example.ecommerce.dto.OrderLineRow(o.id, o.status, o.paymentMethod, o.paymentStatus, " +
+            "o.totalAmount, o.createdAt, i.id, p.id, p.name, p.imageUrl, i.quantity, i.priceAtPurchase) " +
+            "from Order o left join o.items i left join i.product p ";
+
+    // Single orders come with their lines and products in one query (items are lazy otherwise)
+    @Override
+    @EntityGraph(attributePaths = {"user", "items", "items.product"})
+    Optional<Order> findById(Long id);
+
+    // Order headers and lines for one customer in a single query, newest order first
+    @Query(LINE_ROW + "where o.user.email = :email order by o.createdAt desc, o.id desc, i.id")
+    List<OrderLineRow> findLineRowsByUserEmail(@Param("email") String email);
+
+    @Query(LINE_ROW + "where o.id in :ids order by o.createdAt desc, o.id desc, i.id")
+    List<OrderLineRow> findLineRowsByOrderIds(@Param("ids") Collection<Long> ids);
+
+    // Keyset pages of one customer's order ids, newest first, backed by idx_orders_user_created_at_id
+    @Query("select o.id from Order o where o.user.email = :email order by o.createdAt desc, o.id desc")
+    List<Long> findNewestIdsByUserEmail(@Param("email") String email, Limit limit);
+
+    @Query("select o.id from Order o where o.user.email = :email " +
+            "and o.createdAt <= :createdAt and (o.createdAt < :createdAt or o.id < :id) " +
+            "order by o.createdAt desc, o.id desc")
+    List<Long> findIdsByUserEmailBefore(@Param("email") String email, @Param("createdAt") Instant createdAt,
+                                        @Param("id") Long id, Limit limit);
+
+    @Query("select new com.example.ecommerce.dto.OrderSummary(o.id, u.id, u.name, u.email, o.totalAmount, o.status, " +
+            "o.paymentMethod, o.paymentStatus, o.createdAt, count(i)) " +
+            "from Order o join o.user u left join o.items i " +
+            "group by o.id, u.id, u.name, u.email, o.totalAmount, o.status, o.paymentMethod, o.paymentStatus, o.createdAt " +
+            "order by o.createdAt desc, o.id desc")
+    List<OrderSummary> findSummaries();
+
+    // Admin keyset pages over (createdAt, id) newest first; each filter has a (column, created_at, id) index.
+    // Item counts are correlated subqueries, evaluated only for the rows of the page.
+    String SUMMARY = "select new com.example.ecommerce.dto.OrderSummary(o.id, u.id, u.name, u.email, o.totalAmount, " +
+            "o.status, o.paymentMethod, o.paymentStatus, o.createdAt, (select count(i) from OrderItem i where i.order = o)) " +
+            "from Order o join o.user u ";
+    // Dashboard aggregates, computed by the database (status and payment method are index-only scans)
+    @Query("select new com.example.ecommerce.dto.GroupCount(o.status, count(o)) from Order o group by o.status")
+    List<GroupCount> countByStatus();
+
+    @Query("select new com.example.ecommerce.dto.GroupCount(o.paymentMethod, count(o)) from Order o group by o.paymentMethod")
+    List<GroupCount> countByPaymentMethod();
+
+    @Query("select coalesce(sum(o.totalAmount), 0) from Order o where o.paymentStatus = 'PAID' or o.status = 'DELIVERED'")
+    BigDecimal sumRevenue();
+
+    // Conditional transitions: exactly one caller sees 1, so stock is returned at most once per order.
+    // The statuses listed are OrderStatus.sourcesOf(CANCELED).
+    @Modifying(clearAutomatically = true)
+    @Query("update Order o set o.status = 'CANCELED' where o.id = :id and o.status in ('PENDING', 'PLACED', 'PAID')")
+    int markCanceled(@Param("id") Long id);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Order o set o.status = 'CANCELED', o.paymentStatus = 'FAILED' " +
+            "where o.id = :id and o.status in ('PENDING', 'PLACED') and o.paymentStatus <> 'PAID'")
+    int markPaymentFailed(@Param("id") Long id);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Order o set o.razorpayOrderId = :razorpayOrderId " +
+            "where o.id = :id and o.status = 'PENDING' and o.paymentStatus <> 'PAID'")
+    int attachRazorpayOrder(@Param("id") Long id, @Param("razorpayOrderId") String razorpayOrderId);
+
+    // Only an order still awaiting payment (OrderStatus.sourcesOf(PLACED)) can take one: a canceled
+    // order has already returned its stock, and a shipped one must not move back
+    @Modifying(clearAutomatically = true)
+    @Query("update Order o set o.status = 'PLACED', o.paymentStatus = 'PAID', " +
+            "o.razorpayPaymentId = :razorpayPaymentId, o.razorpaySignature = :razorpaySignature " +
+            "where o.id = :id and o.razorpayOrderId = :razorpayOrderId and o.status = 'PENDING' and o.paymentStatus <> 'PAID'")
+    int markPaid(@Param("id") Long id, @Param("razorpayOrderId") String razorpayOrderId,
+                 @Param("razorpayPaymentId") String razorpayPaymentId, @Param("razorpaySignature") String razorpaySignature);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Order o set o.paymentReview = true where o.id = :id")
+    int flagPaymentReview(@Param("id") Long id);
 }
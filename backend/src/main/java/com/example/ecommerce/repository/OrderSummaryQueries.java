@@ -0,0 +1,16 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.dto.OrderSummary;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Admin order console queries, built per filter combination (see OrderSummaryQueriesImpl). */
+public interface OrderSummaryQueries {
+    /**
+     * Up to {@code limit} summaries, newest first, of orders matching the non-null filters;
+     * {@code to} is exclusive. With {@code createdAt}/{@code id} set, only orders before that key.
+     */
+    List<OrderSummary> findSummaryPage(String status, String paymentStatus, String paymentMethod, Long userId,
+                                       Instant from, Instant to, Instant createdAt, Long id, int limit);
+}
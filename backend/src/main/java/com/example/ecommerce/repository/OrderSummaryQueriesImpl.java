@@ -0,0 +1,54 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.dto.OrderSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Only the filters that are set become predicates. A catch-all {@code (:x is null or col = :x)}
+ * form leaves the optimizer one plan for every combination, which can not use the
+ * (column, created_at, id) indexes once the statement is prepared on the server.
+ */
+class OrderSummaryQueriesImpl implements OrderSummaryQueries {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<OrderSummary> findSummaryPage(String status, String paymentStatus, String paymentMethod, Long userId,
+                                              Instant from, Instant to, Instant createdAt, Long id, int limit) {
+        List<String> predicates = new ArrayList<>();
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        filter(predicates, parameters, "o.status = :status", "status", status);
+        filter(predicates, parameters, "o.paymentStatus = :paymentStatus", "paymentStatus", paymentStatus);
+        filter(predicates, parameters, "o.paymentMethod = :paymentMethod", "paymentMethod", paymentMethod);
+        filter(predicates, parameters, "o.user.id = :userId", "userId", userId);
+        filter(predicates, parameters, "o.createdAt >= :from", "from", from);
+        filter(predicates, parameters, "o.createdAt < :to", "to", to);
+        if (createdAt != null) {
+            predicates.add("o.createdAt <= :createdAt and (o.createdAt < :createdAt or o.id < :id)");
+            parameters.put("createdAt", createdAt);
+            parameters.put("id", id);
+        }
+
+        String jpql = OrderRepository.SUMMARY
+                + (predicates.isEmpty() ? "" : "where " + String.join(" and ", predicates) + " ")
+                + "order by o.createdAt desc, o.id desc";
+        TypedQuery<OrderSummary> query = entityManager.createQuery(jpql, OrderSummary.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    private static void filter(List<String> predicates, Map<String, Object> parameters, String predicate,
+                               String name, Object value) {
+        if (value == null) return;
+        predicates.add(predicate);
+        parameters.put(name, value);
+    }
+}
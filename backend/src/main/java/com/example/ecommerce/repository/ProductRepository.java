@@ -1,12 +1,55 @@
 package com.example.ecommerce.repository;
 
+import com.example.ecommerce.dto.ProductCard;
+import com.example.ecommerce.dto.ProductNameView;
 import com.example.ecommerce.model.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
-}
+    String CARD = "select new com.example.ecommerce.dto.ProductCard(p.id, p.name, p.price, p.imageUrl, p.stock, p.createdAt) " +
+            "from Product p ";
+
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 
+    @Query("select new com.example.ecommerce.dto.ProductNameView(p.id, p.name) from Product p where p.id > :id order by p.id")
+    List<ProductNameView> findNamesAfter(@Param("id") Long id, Limit limit);
 
+    @Query("select new com.example.ecommerce.dto.ProductNameView(p.id, p.name) from Product p where p.id in :ids")
+    List<ProductNameView> findNamesByIds(@Param("ids") Collection<Long> ids);
 
+    // Keyset pages over (createdAt, id) newest first, backed by idx_products_created_at_id
+    @Query(CARD + "where (:minPrice is null or p.price >= :minPrice) " +
+            "and (:maxPrice is null or p.price <= :maxPrice) and (:inStock = false or p.stock > 0) " +
+            "order by p.createdAt desc, p.id desc")
+    List<ProductCard> findNewest(@Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice,
+                             @Param("inStock") boolean inStock, Limit limit);
 
+    @Query(CARD + "where p.createdAt <= :createdAt and (p.createdAt < :createdAt or p.id < :id) " +
+            "and (:minPrice is null or p.price >= :minPrice) and (:maxPrice is null or p.price <= :maxPrice) " +
+            "and (:inStock = false or p.stock > 0) order by p.createdAt desc, p.id desc")
+    List<ProductCard> findNewestBefore(@Param("createdAt") Instant createdAt, @Param("id") Long id,
+                                   @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice,
+                                   @Param("inStock") boolean inStock, Limit limit);
 
+    // Keyset pages over (price, id) cheapest first, backed by idx_products_price_id
+    @Query(CARD + "where (:minPrice is null or p.price >= :minPrice) " +
+            "and (:maxPrice is null or p.price <= :maxPrice) and (:inStock = false or p.stock > 0) " +
+            "order by p.price asc, p.id asc")
+    List<ProductCard> findCheapest(@Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice,
+                               @Param("inStock") boolean inStock, Limit limit);
+
+    @Query(CARD + "where p.price >= :price and (p.price > :price or p.id > :id) " +
+            "and (:minPrice is null or p.price >= :minPrice) and (:maxPrice is null or p.price <= :maxPrice) " +
+            "and (:inStock = false or p.stock > 0) order by p.price asc, p.id asc")
+    List<ProductCard> findCheapestAfter(@Param("price") BigDecimal price, @Param("id") Long id,
+                                    @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice,
+                                    @Param("inStock") boolean inStock, Limit limit);
+}
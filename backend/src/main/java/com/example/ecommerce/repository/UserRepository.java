@@ -1,16 +1,23 @@
 package com.example.ecommerce.repository;
 
+import com.example.ecommerce.dto.UserAdminView;
 import com.example.ecommerce.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
-}
-
-
-
 
+    // Locks the user's row until the transaction ends, so that edits of one user's cart run one at a time
+    @Query(value = "SELECT id FROM users WHERE email = :email FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockIdByEmail(@Param("email") String email);
 
+    @Query("select new com.example.ecommerce.dto.UserAdminView(u.id, u.name, u.email, u.role, u.createdAt) " +
+            "from User u order by u.id")
+    List<UserAdminView> findAdminViews();
+}
@@ -1,185 +1,143 @@
 package com.example.ecommerce.service;
 
-import java.math.BigDecimal;
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
 import com.example.ecommerce.dto.AnalyticsDTO;
+import com.example.ecommerce.dto.CursorPageDTO;
+import com.example.ecommerce.dto.ImportReport;
+import com.example.ecommerce.dto.OrderSummary;
+import com.example.ecommerce.dto.UniqueCustomers;
+import com.example.ecommerce.dto.UserAdminView;
 import com.example.ecommerce.model.Order;
-import com.example.ecommerce.model.OrderItem;
 import com.example.ecommerce.model.Product;
 import com.example.ecommerce.model.User;
-import com.example.ecommerce.repository.OrderItemRepository;
 import com.example.ecommerce.repository.OrderRepository;
 import com.example.ecommerce.repository.ProductRepository;
 import com.example.ecommerce.repository.UserRepository;
 
 @Service
 public class AdminService {
+    public static final int MAX_ORDER_PAGE_SIZE = 200;
+
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
-    private final OrderItemRepository orderItemRepository;
+    private final ProductService productService;
+    private final ProductCsvImporter productCsvImporter;
+    private final OrderService orderService;
+    private final AnalyticsAggregator analyticsAggregator;
+    private final UniqueCustomerTracker uniqueCustomerTracker;
 
     public AdminService(UserRepository userRepository, ProductRepository productRepository, 
-                       OrderRepository orderRepository, OrderItemRepository orderItemRepository) {
+                       OrderRepository orderRepository,
+                       ProductService productService, ProductCsvImporter productCsvImporter,
+                       OrderService orderService, AnalyticsAggregator analyticsAggregator,
+                       UniqueCustomerTracker uniqueCustomerTracker) {
         this.userRepository = userRepository;
         this.productRepository = productRepository;
         this.orderRepository = orderRepository;
-        this.orderItemRepository = orderItemRepository;
+        this.productService = productService;
+        this.productCsvImporter = productCsvImporter;
+        this.orderService = orderService;
+        this.analyticsAggregator = analyticsAggregator;
+        this.uniqueCustomerTracker = uniqueCustomerTracker;
     }
 
+    /**
+     * Dashboard metrics from the live counters; see {@link AnalyticsAggregator}. Customer counts
+     * come from {@link UniqueCustomerTracker}.
+     */
     public AnalyticsDTO getAnalytics() {
-        AnalyticsDTO analytics = new AnalyticsDTO();
-        
-        // Basic counts
-        analytics.setTotalUsers(userRepository.count());
-        analytics.setTotalProducts(productRepository.count());
-        analytics.setTotalOrders(orderRepository.count());
-        
-        // Order statistics
-        List<Order> allOrders = orderRepository.findAll();
-        analytics.setPendingOrders(allOrders.stream()
-            .filter(order -> "PENDING".equals(order.getStatus()) || "PLACED".equals(order.getStatus()))
-            .count());
-        analytics.setCompletedOrders(allOrders.stream()
-            .filter(order -> "DELIVERED".equals(order.getStatus()))
-            .count());
-        
-        // Revenue calculation
-        BigDecimal totalRevenue = allOrders.stream()
-            .filter(order -> "PAID".equals(order.getPaymentStatus()) || "DELIVERED".equals(order.getStatus()))
-            .map(Order::getTotalAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        analytics.setTotalRevenue(totalRevenue);
-        
-        // Daily sales data (last 30 days)
-        analytics.setDailySales(getDailySalesData(allOrders));
-        
-        // Order status distribution
-        Map<String, Long> statusDistribution = allOrders.stream()
-            .collect(Collectors.groupingBy(Order::getStatus, Collectors.counting()));
-        analytics.setOrderStatusDistribution(statusDistribution);
-        
-        // Payment method distribution
-        Map<String, Long> paymentDistribution = allOrders.stream()
-            .collect(Collectors.groupingBy(Order::getPaymentMethod, Collectors.counting()));
-        analytics.setPaymentMethodDistribution(paymentDistribution);
-        
-        // Top selling products
-        analytics.setTopSellingProducts(getTopSellingProducts());
-        
+        AnalyticsDTO analytics = analyticsAggregator.snapshot();
+        UniqueCustomers customers = uniqueCustomerTracker.allTime();
+        analytics.setUniqueCustomers(customers.customers());
+        analytics.setReturningCustomers(customers.returningCustomers());
+        analytics.setRepeatPurchaseRate(customers.repeatPurchaseRate());
         return analytics;
     }
-    
-    private List<AnalyticsDTO.DailySalesData> getDailySalesData(List<Order> allOrders) {
-        LocalDate today = LocalDate.now();
-        LocalDate thirtyDaysAgo = today.minusDays(30);
-        
-        Map<LocalDate, List<Order>> ordersByDate = allOrders.stream()
-            .filter(order -> order.getCreatedAt() != null)
-            .filter(order -> {
-                LocalDate orderDate = order.getCreatedAt().atZone(ZoneId.systemDefault()).toLocalDate();
-                return !orderDate.isBefore(thirtyDaysAgo) && !orderDate.isAfter(today);
-            })
-            .collect(Collectors.groupingBy(order -> 
-                order.getCreatedAt().atZone(ZoneId.systemDefault()).toLocalDate()));
-        
-        List<AnalyticsDTO.DailySalesData> dailySales = new ArrayList<>();
-        for (int i = 0; i < 30; i++) {
-            LocalDate date = thirtyDaysAgo.plusDays(i);
-            List<Order> orders = ordersByDate.getOrDefault(date, new ArrayList<>());
-            
-            BigDecimal dailySalesAmount = orders.stream()
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            dailySales.add(new AnalyticsDTO.DailySalesData(date, dailySalesAmount, orders.size()));
-        }
-        
-        return dailySales;
-    }
-    
-    private List<AnalyticsDTO.ProductSalesData> getTopSellingProducts() {
-        List<OrderItem> allOrderItems = orderItemRepository.findAll();
-        
-        Map<Product, Long> productQuantityMap = new HashMap<>();
-        Map<Product, BigDecimal> productRevenueMap = new HashMap<>();
-        
-        for (OrderItem item : allOrderItems) {
-            Product product = item.getProduct();
-            long quantity = item.getQuantity();
-            BigDecimal revenue = item.getPriceAtPurchase().multiply(BigDecimal.valueOf(quantity));
-            
-            productQuantityMap.merge(product, quantity, Long::sum);
-            productRevenueMap.merge(product, revenue, BigDecimal::add);
-        }
-        
-        return productQuantityMap.entrySet().stream()
-            .sorted(Map.Entry.<Product, Long>comparingByValue().reversed())
-            .limit(10)
-            .map(entry -> new AnalyticsDTO.ProductSalesData(
-                entry.getKey().getName(),
-                entry.getValue(),
-                productRevenueMap.get(entry.getKey())
-            ))
-            .collect(Collectors.toList());
-    }
-    
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+
+    public List<UserAdminView> getAllUsers() {
+        return userRepository.findAdminViews();
     }
     
-    public User updateUserRole(Long userId, String role) {
+    public UserAdminView updateUserRole(Long userId, String role) {
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new RuntimeException("User not found"));
         user.setRole(role);
-        return userRepository.save(user);
+        user = userRepository.save(user);
+        return new UserAdminView(user.getId(), user.getName(), user.getEmail(), user.getRole(), user.getCreatedAt());
     }
     
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    public List<OrderSummary> getAllOrders() {
+        return orderRepository.findSummaries();
+    }
+
+    /** Admin order filters; null fields do not filter. {@code to} is exclusive. */
+    public record OrderFilter(String status, String paymentStatus, String paymentMethod, Long userId, String email,
+                              Instant from, Instant to) {
+    }
+
+    /** One keyset page of order summaries matching the filter, newest first. */
+    public CursorPageDTO<OrderSummary> findOrderPage(OrderFilter filter, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_ORDER_PAGE_SIZE));
+        Long userId = filter.userId();
+        if (filter.email() != null && !filter.email().isBlank()) {
+            Long byEmail = userRepository.findByEmail(filter.email().trim()).map(User::getId).orElse(null);
+            if (byEmail == null || (userId != null && !userId.equals(byEmail))) return new CursorPageDTO<>(List.of(), null);
+            userId = byEmail;
+        }
+        String[] key = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+        List<OrderSummary> rows = orderRepository.findSummaryPage(blankToNull(filter.status()),
+                blankToNull(filter.paymentStatus()), blankToNull(filter.paymentMethod()), userId, filter.from(), filter.to(),
+                key == null ? null : KeysetCursor.parseInstant(key[0]), key == null ? null : KeysetCursor.parseId(key[1]),
+                limit + 1);
+        if (rows.size() <= limit) return new CursorPageDTO<>(rows, null);
+        List<OrderSummary> page = rows.subList(0, limit);
+        OrderSummary last = page.get(limit - 1);
+        return new CursorPageDTO<>(page, KeysetCursor.encode(last.createdAt().toString(), last.id()));
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
     }
     
     public Order updateOrderStatus(Long orderId, String status) {
-        Order order = orderRepository.findById(orderId)
-            .orElseThrow(() -> new RuntimeException("Order not found"));
-        order.setStatus(status);
-        return orderRepository.save(order);
+        return orderService.updateStatus(orderId, status);
     }
     
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
     
+    public ImportReport importProducts(Reader csv, boolean replace) throws IOException {
+        if (replace) {
+            productCsvImporter.deleteUnreferencedProducts();
+        }
+        try {
+            return productCsvImporter.importCsv(csv);
+        } finally {
+            productService.reloadIndexes();
+        }
+    }
+
+    // Product writes go through ProductService so the catalog cache stays consistent
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        return productService.create(product);
     }
     
     public Product updateProduct(Long productId, Product productDetails) {
-        Product product = productRepository.findById(productId)
-            .orElseThrow(() -> new RuntimeException("Product not found"));
-        
-        product.setName(productDetails.getName());
-        product.setDescription(productDetails.getDescription());
-        product.setPrice(productDetails.getPrice());
-        product.setImageUrl(productDetails.getImageUrl());
-        product.setStock(productDetails.getStock());
-        
-        return productRepository.save(product);
+        return productService.update(productId, productDetails);
     }
     
     public void deleteProduct(Long productId) {
         if (!productRepository.existsById(productId)) {
             throw new RuntimeException("Product not found");
         }
-        productRepository.deleteById(productId);
+        productService.delete(productId);
     }
 }
\ No newline at end of file
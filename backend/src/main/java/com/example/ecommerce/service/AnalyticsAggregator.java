@@ -0,0 +1,516 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.AnalyticsDTO;
+import com.example.ecommerce.dto.GroupCount;
+import com.example.ecommerce.dto.ProductNameView;
+import com.example.ecommerce.dto.ProductSalesTotal;
+import com.example.ecommerce.event.OrderPlacedEvent;
+import com.example.ecommerce.event.OrderStatusChangedEvent;
+import com.example.ecommerce.repository.OrderItemRepository;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live dashboard figures. The counters are seeded from the database at startup and then moved by
+ * the order events dispatched from the outbox (placement, payment and status changes), so reading
+ * the dashboard only sums a few LongAdders. Money is kept in cents.
+ *
+ * <p>The outbox delivers an event to every listener again when any one of them fails, so the keys
+ * of the last {@code dedupe-capacity} placements and status changes applied are kept and repeats
+ * are skipped.
+ *
+ * <p>Every {@code reconcile-interval-ms} the counters are compared with the database. Events
+ * still pending in the outbox are taken out of the database figures first, since they have not
+ * reached the counters yet; a difference that is still there, unchanged, on the next run (e.g. a
+ * failed event) is added to the counters. User and product totals are refreshed at the same time.
+ */
+@Service
+public class AnalyticsAggregator {
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsAggregator.class);
+    static final int DAILY_SALES_DAYS = 30;
+    static final int TOP_SELLING_LIMIT = 10;
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate snapshotTemplate;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder revenueCents = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> byStatus = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> byPaymentMethod = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LocalDate, Sales> byDay = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Sales> byProduct = new ConcurrentHashMap<>();
+    private final Map<Long, String> productNames = new ConcurrentHashMap<>();
+    private final Object topLock = new Object();
+    private volatile List<Long> topProductIds = List.of();
+    private volatile long totalUsers;
+    private volatile long totalProducts;
+
+    private final Sink live = new LiveSink(true);
+    private final RecentKeys<Long> placedOrders;
+    // an order reaches each status and payment status pair at most once
+    private final RecentKeys<String> statusChanges;
+    private volatile boolean seeded;
+    private Totals lastDrift;
+    private final LongAdder eventsApplied = new LongAdder();
+    private volatile long reconciles;
+    private volatile long corrections;
+    private volatile long lastReconcileMs;
+    private volatile Instant lastReconciledAt;
+
+    private static final class Sales {
+        final LongAdder count = new LongAdder();
+        final LongAdder cents = new LongAdder();
+    }
+
+    private record Amount(long count, long cents) {
+        Amount plus(long count, long cents) {
+            return new Amount(this.count + count, this.cents + cents);
+        }
+    }
+
+    public record Stats(boolean seeded, long eventsApplied, long reconciles, long corrections, long lastReconcileMs,
+                        Instant lastReconciledAt) {}
+
+    public AnalyticsAggregator(OrderRepository orderRepository, OrderItemRepository orderItemRepository,
+                               UserRepository userRepository, ProductRepository productRepository,
+                               JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.analytics.dedupe-capacity:100000}") int dedupeCapacity) {
+        this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.placedOrders = new RecentKeys<>(dedupeCapacity);
+        this.statusChanges = new RecentKeys<>(dedupeCapacity);
+        // one consistent snapshot of orders, items and the outbox
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setReadOnly(true);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        reconcile(true);
+    }
+
+    @EventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        if (!placedOrders.firstSeen(event.orderId())) return;
+        apply(event, 1, live);
+        eventsApplied.increment();
+    }
+
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (!statusChanges.firstSeen(event.orderId() + " " + event.status() + " " + event.paymentStatus())) return;
+        apply(event, 1, live);
+        eventsApplied.increment();
+    }
+
+    /** The dashboard, read from the counters. */
+    public AnalyticsDTO snapshot() {
+        if (!seeded) reconcile(true);
+        AnalyticsDTO analytics = new AnalyticsDTO();
+        analytics.setTotalUsers(totalUsers);
+        analytics.setTotalProducts(totalProducts);
+
+        Map<String, Long> statusDistribution = sums(byStatus);
+        analytics.setOrderStatusDistribution(statusDistribution);
+        analytics.setTotalOrders(orders.sum());
+        analytics.setPendingOrders(statusDistribution.getOrDefault("PENDING", 0L) + statusDistribution.getOrDefault("PLACED", 0L));
+        analytics.setCompletedOrders(statusDistribution.getOrDefault("DELIVERED", 0L));
+        analytics.setPaymentMethodDistribution(sums(byPaymentMethod));
+        analytics.setTotalRevenue(BigDecimal.valueOf(revenueCents.sum(), 2));
+
+        LocalDate firstDay = LocalDate.now(zone).minusDays(DAILY_SALES_DAYS);
+        List<AnalyticsDTO.DailySalesData> dailySales = new ArrayList<>(DAILY_SALES_DAYS);
+        for (int i = 0; i < DAILY_SALES_DAYS; i++) {
+            LocalDate date = firstDay.plusDays(i);
+            Sales sales = byDay.get(date);
+            dailySales.add(sales == null
+                    ? new AnalyticsDTO.DailySalesData(date, BigDecimal.ZERO, 0)
+                    : new AnalyticsDTO.DailySalesData(date, BigDecimal.valueOf(sales.cents.sum(), 2), sales.count.sum()));
+        }
+        analytics.setDailySales(dailySales);
+
+        List<AnalyticsDTO.ProductSalesData> top = new ArrayList<>(TOP_SELLING_LIMIT);
+        for (Long id : topProductIds) {
+            Sales sales = byProduct.get(id);
+            top.add(new AnalyticsDTO.ProductSalesData(productNames.get(id), sales.count.sum(),
+                    BigDecimal.valueOf(sales.cents.sum(), 2)));
+        }
+        analytics.setTopSellingProducts(top);
+        return analytics;
+    }
+
+    public Stats stats() {
+        return new Stats(seeded, eventsApplied.sum(), reconciles, corrections, lastReconcileMs, lastReconciledAt);
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.analytics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        // until the seed has run at startup there is nothing to compare
+        if (seeded) reconcile(false);
+    }
+
+    /**
+     * Compares the counters with the database. A seed applies the difference at once; otherwise
+     * it is applied only when the previous run saw the same difference, since one seen once may
+     * just be events on their way.
+     */
+    private synchronized void reconcile(boolean seed) {
+        if (seed && seeded) return;
+        long start = System.nanoTime();
+        LocalDate firstDay = LocalDate.now(zone).minusDays(DAILY_SALES_DAYS);
+        Totals database = loadFromDatabase(firstDay);
+        Totals drift = new Totals(firstDay);
+        database.replay(drift, 1);
+        captureLive(firstDay).replay(drift, -1);
+        drift.normalize();
+
+        byDay.keySet().removeIf(date -> date.isBefore(firstDay));
+        totalUsers = userRepository.count();
+        totalProducts = productRepository.count();
+        if (drift.isZero()) {
+            lastDrift = null;
+        } else if (seed || drift.equals(lastDrift)) {
+            if (!seed) log.info("Correcting analytics counters by {} orders and {} revenue cents", drift.orders, drift.revenueCents);
+            // the top list is rebuilt once below rather than after every product
+            drift.replay(new LiveSink(false), 1);
+            if (!seed) corrections++;
+            lastDrift = null;
+        } else {
+            lastDrift = drift;
+        }
+        rebuildTop();
+        seeded = true;
+        reconciles++;
+        lastReconcileMs = (System.nanoTime() - start) / 1_000_000;
+        lastReconciledAt = Instant.now();
+    }
+
+    private Totals loadFromDatabase(LocalDate firstDay) {
+        return snapshotTemplate.execute(tx -> {
+            Totals totals = new Totals(firstDay);
+            for (GroupCount c : orderRepository.countByStatus()) {
+                totals.orders(c.count());
+                totals.status(c.key(), c.count());
+            }
+            for (GroupCount c : orderRepository.countByPaymentMethod()) totals.paymentMethod(c.key(), c.count());
+            totals.revenue(cents(orderRepository.sumRevenue()));
+            loadDays(firstDay, LocalDate.now(zone).plusDays(1), totals);
+            for (ProductSalesTotal p : orderItemRepository.sumSalesByProduct()) {
+                totals.product(p.productId(), p.quantity(), cents(p.revenue()));
+            }
+            // committed orders whose events have not reached the counters yet
+            jdbcTemplate.query("SELECT event_type, payload FROM outbox_events WHERE status = 'PENDING'",
+                    rs -> {
+                        apply(parse(rs.getString(1), rs.getString(2)), -1, totals);
+                    });
+            return totals;
+        });
+    }
+
+    /**
+     * Adds the orders created on [from, to), by day in the server's time zone. The database groups
+     * them by local date; the range is split where the zone's UTC offset changes, so each query
+     * shifts created_at (stored in UTC) by a single offset.
+     */
+    private void loadDays(LocalDate fromDate, LocalDate toDate, Totals totals) {
+        for (ZoneOffsetRanges.Range range : ZoneOffsetRanges.split(zone, fromDate.atStartOfDay(zone).toInstant(),
+                toDate.atStartOfDay(zone).toInstant())) {
+            jdbcTemplate.query("SELECT CAST(TIMESTAMPADD(SECOND, ?, created_at) AS DATE) AS sales_date, COUNT(*), SUM(total_amount) " +
+                            "FROM orders WHERE created_at >= ? AND created_at < ? GROUP BY sales_date",
+                    rs -> {
+                        totals.day(rs.getObject(1, LocalDate.class), rs.getLong(2), cents(rs.getBigDecimal(3)));
+                    },
+                    range.offsetSeconds(), LocalDateTime.ofInstant(range.from(), ZoneOffset.UTC),
+                    LocalDateTime.ofInstant(range.to(), ZoneOffset.UTC));
+        }
+    }
+
+    private Totals captureLive(LocalDate firstDay) {
+        Totals totals = new Totals(firstDay);
+        totals.orders(orders.sum());
+        totals.revenue(revenueCents.sum());
+        byStatus.forEach((k, v) -> totals.status(k, v.sum()));
+        byPaymentMethod.forEach((k, v) -> totals.paymentMethod(k, v.sum()));
+        byDay.forEach((k, v) -> totals.day(k, v.count.sum(), v.cents.sum()));
+        byProduct.forEach((k, v) -> totals.product(k, v.count.sum(), v.cents.sum()));
+        return totals;
+    }
+
+    private Object parse(String type, String payload) {
+        try {
+            return objectMapper.readValue(payload, OutboxService.eventClass(type));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read outbox event " + type, e);
+        }
+    }
+
+    // The top list only changes when a product's units grow past the last entry's, so a sale
+    // rebuilds it from its current entries plus that product.
+    private void offerTop(long productId) {
+        List<Long> top = topProductIds;
+        if (top.size() == TOP_SELLING_LIMIT && !top.contains(productId)) {
+            Long last = top.get(top.size() - 1);
+            if (BY_UNITS.compare(entry(productId), entry(last)) > 0) return;
+        }
+        synchronized (topLock) {
+            Set<Long> candidates = new HashSet<>(topProductIds);
+            candidates.add(productId);
+            publishTop(candidates);
+        }
+    }
+
+    // also reloads the names, which may have been edited
+    private void rebuildTop() {
+        synchronized (topLock) {
+            productNames.clear();
+            publishTop(byProduct.keySet());
+        }
+    }
+
+    private static final Comparator<long[]> BY_UNITS =
+            Comparator.comparingLong((long[] e) -> -e[1]).thenComparingLong(e -> e[0]);
+
+    // {productId, units}
+    private long[] entry(long productId) {
+        Sales sales = byProduct.get(productId);
+        return new long[]{productId, sales == null ? 0 : sales.count.sum()};
+    }
+
+    private void publishTop(Set<Long> candidates) {
+        List<Long> top = candidates.stream()
+                .map(this::entry)
+                .filter(e -> e[1] > 0)
+                .sorted(BY_UNITS)
+                .limit(TOP_SELLING_LIMIT)
+                .map(e -> e[0])
+                .toList();
+        List<Long> missing = top.stream().filter(id -> !productNames.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (ProductNameView p : productRepository.findNamesByIds(missing)) productNames.put(p.id(), p.name());
+        }
+        topProductIds = top;
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> adders) {
+        Map<String, Long> map = new HashMap<>();
+        adders.forEach((k, v) -> {
+            long sum = v.sum();
+            if (sum != 0) map.put(k, sum);
+        });
+        return map;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static boolean countsAsRevenue(String status, String paymentStatus) {
+        return "PAID".equals(paymentStatus) || "DELIVERED".equals(status);
+    }
+
+    /** Where an event's effect goes: the live counters, or a {@link Totals} being compared. */
+    private interface Sink {
+        void orders(long delta);
+
+        void status(String status, long delta);
+
+        void paymentMethod(String paymentMethod, long delta);
+
+        void revenue(long cents);
+
+        void day(LocalDate date, long count, long cents);
+
+        void product(long productId, long quantity, long cents);
+    }
+
+    private void apply(Object event, int sign, Sink sink) {
+        if (event instanceof OrderPlacedEvent placed) {
+            long total = cents(placed.totalAmount());
+            sink.orders(sign);
+            sink.status(placed.status(), sign);
+            sink.paymentMethod(placed.paymentMethod(), sign);
+            if (countsAsRevenue(placed.status(), placed.paymentStatus())) sink.revenue(sign * total);
+            if (placed.createdAt() != null) sink.day(LocalDate.ofInstant(placed.createdAt(), zone), sign, sign * total);
+            for (OrderPlacedEvent.Line line : placed.lines()) {
+                sink.product(line.productId(), (long) sign * line.quantity(),
+                        sign * cents(line.unitPrice().multiply(BigDecimal.valueOf(line.quantity()))));
+            }
+        } else if (event instanceof OrderStatusChangedEvent changed) {
+            if (!Objects.equals(changed.previousStatus(), changed.status())) {
+                sink.status(changed.previousStatus(), -sign);
+                sink.status(changed.status(), sign);
+            }
+            boolean before = countsAsRevenue(changed.previousStatus(), changed.previousPaymentStatus());
+            boolean after = countsAsRevenue(changed.status(), changed.paymentStatus());
+            if (before != after) sink.revenue((after ? sign : -sign) * cents(changed.totalAmount()));
+        }
+    }
+
+    private final class LiveSink implements Sink {
+        private final boolean trackTop;
+
+        LiveSink(boolean trackTop) {
+            this.trackTop = trackTop;
+        }
+
+        @Override
+        public void orders(long delta) {
+            orders.add(delta);
+        }
+
+        @Override
+        public void status(String status, long delta) {
+            if (status != null) byStatus.computeIfAbsent(status, k -> new LongAdder()).add(delta);
+        }
+
+        @Override
+        public void paymentMethod(String paymentMethod, long delta) {
+            if (paymentMethod != null) byPaymentMethod.computeIfAbsent(paymentMethod, k -> new LongAdder()).add(delta);
+        }
+
+        @Override
+        public void revenue(long cents) {
+            revenueCents.add(cents);
+        }
+
+        @Override
+        public void day(LocalDate date, long count, long cents) {
+            if (date.isBefore(LocalDate.now(zone).minusDays(DAILY_SALES_DAYS))) return;
+            Sales sales = byDay.computeIfAbsent(date, k -> new Sales());
+            sales.count.add(count);
+            sales.cents.add(cents);
+        }
+
+        @Override
+        public void product(long productId, long quantity, long cents) {
+            Sales sales = byProduct.computeIfAbsent(productId, k -> new Sales());
+            sales.count.add(quantity);
+            sales.cents.add(cents);
+            if (trackTop && quantity > 0) offerTop(productId);
+        }
+    }
+
+    /** Plain figures: a database snapshot, a copy of the counters, or the difference of the two. */
+    private static final class Totals implements Sink {
+        final LocalDate firstDay;
+        long orders;
+        long revenueCents;
+        final Map<String, Long> byStatus = new HashMap<>();
+        final Map<String, Long> byPaymentMethod = new HashMap<>();
+        final Map<LocalDate, Amount> byDay = new HashMap<>();
+        final Map<Long, Amount> byProduct = new HashMap<>();
+
+        Totals(LocalDate firstDay) {
+            this.firstDay = firstDay;
+        }
+
+        @Override
+        public void orders(long delta) {
+            orders += delta;
+        }
+
+        @Override
+        public void status(String status, long delta) {
+            if (status != null) byStatus.merge(status, delta, Long::sum);
+        }
+
+        @Override
+        public void paymentMethod(String paymentMethod, long delta) {
+            if (paymentMethod != null) byPaymentMethod.merge(paymentMethod, delta, Long::sum);
+        }
+
+        @Override
+        public void revenue(long cents) {
+            revenueCents += cents;
+        }
+
+        @Override
+        public void day(LocalDate date, long count, long cents) {
+            if (date.isBefore(firstDay)) return;
+            byDay.put(date, byDay.getOrDefault(date, new Amount(0, 0)).plus(count, cents));
+        }
+
+        @Override
+        public void product(long productId, long quantity, long cents) {
+            byProduct.put(productId, byProduct.getOrDefault(productId, new Amount(0, 0)).plus(quantity, cents));
+        }
+
+        void replay(Sink sink, int sign) {
+            if (orders != 0) sink.orders(sign * orders);
+            if (revenueCents != 0) sink.revenue(sign * revenueCents);
+            byStatus.forEach((k, v) -> sink.status(k, sign * v));
+            byPaymentMethod.forEach((k, v) -> sink.paymentMethod(k, sign * v));
+            byDay.forEach((k, v) -> sink.day(k, sign * v.count(), sign * v.cents()));
+            byProduct.forEach((k, v) -> sink.product(k, sign * v.count(), sign * v.cents()));
+        }
+
+        void normalize() {
+            byStatus.values().removeIf(v -> v == 0);
+            byPaymentMethod.values().removeIf(v -> v == 0);
+            byDay.values().removeIf(v -> v.count() == 0 && v.cents() == 0);
+            byProduct.values().removeIf(v -> v.count() == 0 && v.cents() == 0);
+        }
+
+        boolean isZero() {
+            return orders == 0 && revenueCents == 0 && byStatus.isEmpty() && byPaymentMethod.isEmpty()
+                    && byDay.isEmpty() && byProduct.isEmpty();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Totals t && orders == t.orders && revenueCents == t.revenueCents
+                    && firstDay.equals(t.firstDay) && byStatus.equals(t.byStatus)
+                    && byPaymentMethod.equals(t.byPaymentMethod) && byDay.equals(t.byDay) && byProduct.equals(t.byProduct);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(orders, revenueCents, firstDay);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.BulkStatusReport;
+import com.example.ecommerce.event.OrderStatusChangedEvent;
+import com.example.ecommerce.model.OrderStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves many orders to one status at once. Ids are processed in chunks, each in its own
+ * transaction: the chunk's orders are locked and read in one query, checked against
+ * {@link OrderStatus}, then changed with one {@code UPDATE ... WHERE status = ? AND id IN (...)}
+ * per source status. Canceling returns the stock of all canceled orders of the chunk together,
+ * and every change is recorded as an OrderStatusChangedEvent in the outbox.
+ */
+@Service
+public class BulkOrderStatusService {
+    private static final Logger log = LoggerFactory.getLogger(BulkOrderStatusService.class);
+    public static final int MAX_ORDERS = 20_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryService inventoryService;
+    private final OutboxService outboxService;
+    private final int chunkSize;
+
+    private record OrderRow(long id, String status, String paymentStatus, long userId, BigDecimal totalAmount) {}
+
+    public BulkOrderStatusService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  InventoryService inventoryService, OutboxService outboxService,
+                                  @Value("${app.orders.bulk-status.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inventoryService = inventoryService;
+        this.outboxService = outboxService;
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkStatusReport updateStatus(List<Long> orderIds, String status) {
+        long start = System.nanoTime();
+        OrderStatus target = OrderStatus.parse(status);
+        if (orderIds == null || orderIds.isEmpty()) throw new IllegalArgumentException("orderIds is required");
+        if (orderIds.size() > MAX_ORDERS) throw new IllegalArgumentException("At most " + MAX_ORDERS + " orders per request");
+        if (orderIds.contains(null)) throw new IllegalArgumentException("orderIds must not contain null");
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+
+        Map<Long, BulkStatusReport.Result> results = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            Map<Long, BulkStatusReport.Result> chunkResults = new HashMap<>();
+            try {
+                transactionTemplate.executeWithoutResult(tx -> applyChunk(chunk, target, chunkResults));
+                results.putAll(chunkResults);
+            } catch (RuntimeException e) {
+                // earlier chunks stay committed; this one changed nothing
+                log.warn("Bulk status change of {} orders to {} failed: {}", chunk.size(), target, e.toString());
+                chunk.forEach(id -> results.put(id, new BulkStatusReport.Result(id, "FAILED", null)));
+            }
+        }
+
+        int updated = 0, unchanged = 0, rejected = 0, notFound = 0, failed = 0;
+        List<BulkStatusReport.Result> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            BulkStatusReport.Result result = results.get(id);
+            ordered.add(result);
+            switch (result.outcome()) {
+                case "UPDATED" -> updated++;
+                case "UNCHANGED" -> unchanged++;
+                case "NOT_FOUND" -> notFound++;
+                case "FAILED" -> failed++;
+                default -> rejected++;
+            }
+        }
+        return new BulkStatusReport(target.name(), ids.size(), updated, unchanged, rejected, notFound, failed,
+                (System.nanoTime() - start) / 1_000_000, ordered);
+    }
+
+    private void applyChunk(List<Long> ids, OrderStatus target, Map<Long, BulkStatusReport.Result> results) {
+        String in = String.join(",", Collections.nCopies(ids.size(), "?"));
+        // row locks in id order, so concurrent bulk changes cannot deadlock each other
+        List<OrderRow> rows = jdbcTemplate.query("SELECT id, status, payment_status, user_id, total_amount FROM orders " +
+                        "WHERE id IN (" + in + ") ORDER BY id FOR UPDATE",
+                (rs, i) -> new OrderRow(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4), rs.getBigDecimal(5)),
+                ids.toArray());
+
+        Map<String, List<OrderRow>> bySource = new HashMap<>();
+        Set<OrderStatus> sources = OrderStatus.sourcesOf(target);
+        for (OrderRow row : rows) {
+            if (target.name().equals(row.status())) {
+                results.put(row.id(), new BulkStatusReport.Result(row.id(), "UNCHANGED", row.status()));
+            } else if (sources.stream().anyMatch(s -> s.name().equals(row.status()))) {
+                bySource.computeIfAbsent(row.status(), s -> new ArrayList<>()).add(row);
+            } else {
+                results.put(row.id(), new BulkStatusReport.Result(row.id(), "INVALID_TRANSITION", row.status()));
+            }
+        }
+        for (Long id : ids) {
+            results.putIfAbsent(id, new BulkStatusReport.Result(id, "NOT_FOUND", null));
+        }
+
+        List<OrderRow> changed = new ArrayList<>();
+        for (Map.Entry<String, List<OrderRow>> group : bySource.entrySet()) {
+            List<OrderRow> groupRows = group.getValue();
+            List<Object> args = new ArrayList<>(groupRows.size() + 2);
+            args.add(target.name());
+            args.add(group.getKey());
+            groupRows.forEach(r -> args.add(r.id()));
+            jdbcTemplate.update("UPDATE orders SET status = ? WHERE status = ? AND id IN (" +
+                    String.join(",", Collections.nCopies(groupRows.size(), "?")) + ")", args.toArray());
+            changed.addAll(groupRows);
+        }
+
+        if (target == OrderStatus.CANCELED && !changed.isEmpty()) {
+            String changedIn = String.join(",", Collections.nCopies(changed.size(), "?"));
+            List<InventoryService.StockLine> lines = jdbcTemplate.query(
+                    "SELECT product_id, quantity FROM order_items WHERE order_id IN (" + changedIn + ")",
+                    (rs, i) -> new InventoryService.StockLine(rs.getLong(1), rs.getInt(2)),
+                    changed.stream().map(OrderRow::id).toArray());
+            if (!lines.isEmpty()) inventoryService.release(lines);
+        }
+
+        Instant now = Instant.now();
+        for (OrderRow row : changed) {
+            results.put(row.id(), new BulkStatusReport.Result(row.id(), "UPDATED", row.status()));
+            outboxService.append(row.id(), new OrderStatusChangedEvent(row.id(), row.userId(), row.status(),
+                    row.paymentStatus(), target.name(), row.paymentStatus(), row.totalAmount(), now));
+        }
+    }
+}
@@ -1,60 +1,215 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.dto.CartAddResult;
+import com.example.ecommerce.id.IdBlockAllocator;
 import com.example.ecommerce.model.CartItem;
 import com.example.ecommerce.model.Product;
 import com.example.ecommerce.model.User;
 import com.example.ecommerce.repository.CartItemRepository;
-import com.example.ecommerce.repository.ProductRepository;
 import com.example.ecommerce.repository.UserRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @Service
 public class CartService {
+    public static final int MAX_BATCH_OPERATIONS = 500;
+
+    private static final String UPSERT_SQL = "INSERT INTO cart_items (id, user_id, product_id, quantity) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)";
+    private static final String DELETE_SQL = "DELETE FROM cart_items WHERE user_id = ? AND product_id = ?";
+
     private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final ProductCache productCache;
+    private final CartWriteBehindStore writeBehindStore;
+    private final IdBlockAllocator idBlockAllocator;
+    private final JdbcTemplate jdbcTemplate;
 
-    public CartService(CartItemRepository cartItemRepository, ProductRepository productRepository, UserRepository userRepository) {
+    public CartService(CartItemRepository cartItemRepository, UserRepository userRepository,
+                       ProductCache productCache, CartWriteBehindStore writeBehindStore,
+                       IdBlockAllocator idBlockAllocator, JdbcTemplate jdbcTemplate) {
         this.cartItemRepository = cartItemRepository;
-        this.productRepository = productRepository;
         this.userRepository = userRepository;
+        this.productCache = productCache;
+        this.writeBehindStore = writeBehindStore;
+        this.idBlockAllocator = idBlockAllocator;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     public List<CartItem> getCart(String email) {
+        if (writeBehindStore.isEnabled()) {
+            List<CartWriteBehindStore.CartLine> lines = writeBehindStore.lines(email);
+            Map<Long, Product> products = productCache.getAll(lines.stream().map(CartWriteBehindStore.CartLine::productId).toList());
+            return lines.stream().map(line -> toCartItem(line, products.get(line.productId()))).toList();
+        }
         User user = userRepository.findByEmail(email).orElseThrow();
-        return cartItemRepository.findByUser(user);
+        List<CartItem> items = cartItemRepository.findByUser(user);
+        resolveProducts(items, productCache);
+        return items;
     }
 
-    public CartItem addToCart(String email, Long productId, int quantity) {
-        User user = userRepository.findByEmail(email).orElseThrow();
-        Product product = productRepository.findById(productId).orElseThrow();
-        CartItem item = cartItemRepository.findByUserIdAndProductId(user.getId(), productId)
-                .orElseGet(() -> {
-                    CartItem ci = new CartItem();
-                    ci.setUser(user);
-                    ci.setProduct(product);
-                    ci.setQuantity(0);
-                    return ci;
-                });
-        item.setQuantity(item.getQuantity() + quantity);
-        return cartItemRepository.save(item);
+    /** Swaps the lazy product references of cart items for cached products. */
+    static void resolveProducts(List<CartItem> items, ProductCache productCache) {
+        Map<Long, Product> products = productCache.getAll(items.stream().map(ci -> ci.getProduct().getId()).toList());
+        items.forEach(ci -> ci.setProduct(products.get(ci.getProduct().getId())));
+    }
+
+    /**
+     * Adds to the cart with a single upsert, capped at the product's stock. The user's row is
+     * locked first, so concurrent adds to one cart run one after the other and the result says
+     * exactly how many units this call added.
+     *
+     * @throws NoSuchElementException if the product does not exist
+     */
+    @Transactional
+    public CartAddResult addToCart(String email, Long productId, int quantity) {
+        if (productId == null) throw new IllegalArgumentException("productId is required");
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity must be positive");
+        if (writeBehindStore.isEnabled()) {
+            Product product = requireProduct(productId);
+            CartWriteBehindStore.Added added = writeBehindStore.add(email, productId, quantity, product.getStock());
+            return new CartAddResult(toCartItem(added.line(), product), quantity, added.units());
+        }
+        userRepository.lockIdByEmail(email).orElseThrow();
+        int before = cartItemRepository.findQuantity(email, productId).orElse(0);
+        // 0 rows may also be a line left as it was, which is reported as nothing added
+        if (cartItemRepository.upsertQuantity(idBlockAllocator.next(IdBlockAllocator.CART_ITEMS), email, productId, quantity) == 0) {
+            requireProduct(productId);
+        }
+        CartItem item = cartItemRepository.findByUserEmailAndProductId(email, productId)
+                .orElseThrow(() -> new IllegalArgumentException("Product is out of stock"));
+        item.setProduct(productCache.get(productId));
+        return new CartAddResult(item, quantity, item.getQuantity() - before);
+    }
+
+    private Product requireProduct(Long productId) {
+        Product product = productCache.getAll(List.of(productId)).get(productId);
+        if (product == null) throw new NoSuchElementException("Product not found: " + productId);
+        return product;
+    }
+
+    public enum CartOperationType { ADD, SET, REMOVE }
+
+    /** One batch edit; a null quantity means 1 for ADD and is rejected for SET. */
+    public record CartOperation(CartOperationType type, Long productId, Integer quantity) {}
+
+    /**
+     * Applies add / set-quantity / remove operations in order, in one transaction. The user's row
+     * and the referenced products are locked and read once, the resulting quantities are worked out
+     * in memory, and the changes are written as one batch of upserts and one of deletes. Stock is
+     * checked against the locked rows, so a line can not exceed it however stale the product cache
+     * is. Setting a quantity of 0 removes the line. Nothing is written if any operation is invalid
+     * or a resulting line would exceed stock.
+     */
+    @Transactional
+    public List<CartItem> applyBatch(String email, List<CartOperation> operations) {
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_OPERATIONS + " operations per batch");
+        }
+        for (CartOperation op : operations) {
+            if (op.type() == null) throw new IllegalArgumentException("Operation type is required");
+            if (op.productId() == null) throw new IllegalArgumentException("productId is required");
+            if (op.type() == CartOperationType.ADD && op.quantity() != null && op.quantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+            if (op.type() == CartOperationType.SET) {
+                if (op.quantity() == null) throw new IllegalArgumentException("quantity is required for set");
+                if (op.quantity() < 0) throw new IllegalArgumentException("Quantity must not be negative");
+            }
+        }
+        writeBehindStore.flushForUpdate(email);
+        Long userId = userRepository.lockIdByEmail(email).orElseThrow();
+        if (operations.isEmpty()) return cart(userId);
+
+        List<Long> productIds = operations.stream().map(CartOperation::productId).distinct().sorted().toList();
+        String in = String.join(",", Collections.nCopies(productIds.size(), "?"));
+        // row locks in id order, so concurrent batches and checkouts cannot deadlock each other
+        Map<Long, StockRow> stock = new HashMap<>();
+        jdbcTemplate.query("SELECT id, stock, name FROM products WHERE id IN (" + in + ") ORDER BY id FOR UPDATE",
+                rs -> { stock.put(rs.getLong(1), new StockRow(rs.getInt(2), rs.getString(3))); }, productIds.toArray());
+        List<Object> lineArgs = new ArrayList<>(productIds.size() + 1);
+        lineArgs.add(userId);
+        lineArgs.addAll(productIds);
+        Map<Long, LineRow> lines = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, id, quantity FROM cart_items WHERE user_id = ? AND product_id IN (" + in + ") FOR UPDATE",
+                rs -> { lines.put(rs.getLong(1), new LineRow(rs.getLong(2), rs.getInt(3))); }, lineArgs.toArray());
+
+        Map<Long, Long> quantities = new LinkedHashMap<>();
+        for (CartOperation op : operations) {
+            long current = quantities.computeIfAbsent(op.productId(), id -> lines.containsKey(id) ? lines.get(id).quantity() : 0L);
+            quantities.put(op.productId(), switch (op.type()) {
+                case ADD -> current + (op.quantity() == null ? 1 : op.quantity());
+                case SET -> (long) op.quantity();
+                case REMOVE -> 0L;
+            });
+        }
+
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : quantities.entrySet()) {
+            Long productId = entry.getKey();
+            long quantity = entry.getValue();
+            LineRow line = lines.get(productId);
+            if (quantity == 0) {
+                if (line != null) deletes.add(new Object[]{userId, productId});
+                continue;
+            }
+            StockRow row = stock.get(productId);
+            if (row == null) throw new NoSuchElementException("Product not found: " + productId);
+            if (quantity > row.stock()) throw new IllegalArgumentException("Only " + row.stock() + " of " + row.name() + " in stock");
+            if (line == null || line.quantity() != quantity) {
+                long id = line != null ? line.id() : idBlockAllocator.next(IdBlockAllocator.CART_ITEMS);
+                upserts.add(new Object[]{id, userId, productId, (int) quantity});
+            }
+        }
+        if (!upserts.isEmpty()) jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+        if (!deletes.isEmpty()) jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+        return cart(userId);
+    }
+
+    private record StockRow(int stock, String name) {}
+
+    private record LineRow(long id, int quantity) {}
+
+    private List<CartItem> cart(Long userId) {
+        List<CartItem> cart = cartItemRepository.findByUserId(userId);
+        resolveProducts(cart, productCache);
+        return cart;
     }
 
     public void removeFromCart(String email, Long productId) {
+        if (writeBehindStore.isEnabled()) {
+            writeBehindStore.remove(email, productId);
+            return;
+        }
         User user = userRepository.findByEmail(email).orElseThrow();
         cartItemRepository.findByUserIdAndProductId(user.getId(), productId)
                 .ifPresent(cartItemRepository::delete);
     }
 
     public void clearCart(String email) {
+        if (writeBehindStore.isEnabled()) {
+            writeBehindStore.clear(email);
+            return;
+        }
         User user = userRepository.findByEmail(email).orElseThrow();
         cartItemRepository.deleteByUser(user);
     }
-}
-
-
-
-
 
+    private static CartItem toCartItem(CartWriteBehindStore.CartLine line, Product product) {
+        CartItem item = new CartItem();
+        item.setId(line.id());
+        item.setProduct(product);
+        item.setQuantity(line.quantity());
+        return item;
+    }
+}
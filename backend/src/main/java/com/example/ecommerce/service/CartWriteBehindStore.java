@@ -0,0 +1,328 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.id.IdBlockAllocator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind storage for carts ({@code app.cart.write-behind.enabled}). Active carts
+ * live in memory per user; mutations only update the in-memory lines and mark them dirty, so a
+ * burst of +/- taps on one line collapses into a single row write. Dirty lines are written to
+ * cart_items in JDBC batches by a timer, and synchronously by {@link #flushForUpdate} before any
+ * code reads cart_items directly (checkout, batch edits).
+ *
+ * <p>Lock order: a cart's lock may be held while taking {@code flushLock}, never the other way
+ * round; the timer only try-locks carts and skips busy ones.
+ */
+@Component
+public class CartWriteBehindStore {
+    private static final Logger log = LoggerFactory.getLogger(CartWriteBehindStore.class);
+    private static final String UPSERT_SQL = "INSERT INTO cart_items (id, user_id, product_id, quantity) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)";
+    private static final String DELETE_SQL = "DELETE FROM cart_items WHERE user_id = ? AND product_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdBlockAllocator idBlockAllocator;
+    private final boolean enabled;
+    private final long idleNanos;
+    private final int batchSize;
+
+    private final ConcurrentHashMap<String, UserCart> carts = new ConcurrentHashMap<>();
+    // held by whoever is writing dirty lines, from snapshot until the write is committed
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // carts dropped from memory so far; a load that overlaps an eviction may predate its write-back
+    private final AtomicLong evictions = new AtomicLong();
+    // carts with a non-empty dirty set, maintained under each cart's lock
+    private final AtomicLong dirtyCarts = new AtomicLong();
+
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    public record CartLine(Long id, Long productId, int quantity) {}
+
+    /** A line after an add, with the number of units the add actually contributed. */
+    public record Added(CartLine line, int units) {}
+
+    public record Stats(boolean enabled, long carts, long dirtyCarts, long mutations, long rowsWritten, long flushes) {}
+
+    private record PendingWrite(UserCart cart, Long productId, int quantity) {}
+
+    private static final class UserCart {
+        final ReentrantLock lock = new ReentrantLock();
+        final long userId;
+        // product id -> line; a line with quantity 0 is a pending delete
+        final Map<Long, CartLine> lines = new LinkedHashMap<>();
+        final Set<Long> dirty = new HashSet<>();
+        long lastAccess = System.nanoTime();
+        boolean evicted;
+
+        UserCart(long userId) {
+            this.userId = userId;
+        }
+    }
+
+    public CartWriteBehindStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                IdBlockAllocator idBlockAllocator,
+                                @Value("${app.cart.write-behind.enabled:false}") boolean enabled,
+                                @Value("${app.cart.write-behind.idle-seconds:600}") long idleSeconds,
+                                @Value("${app.cart.write-behind.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idBlockAllocator = idBlockAllocator;
+        this.enabled = enabled;
+        this.idleNanos = idleSeconds * 1_000_000_000L;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<CartLine> lines(String email) {
+        UserCart cart = lock(email);
+        try {
+            return cart.lines.values().stream().filter(l -> l.quantity() > 0).toList();
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    /** Adds units to a line, capped at {@code stock}. */
+    public Added add(String email, Long productId, int quantity, int stock) {
+        if (stock <= 0) throw new IllegalArgumentException("Product is out of stock");
+        UserCart cart = lock(email);
+        try {
+            CartLine line = cart.lines.get(productId);
+            int current = line == null ? 0 : line.quantity();
+            CartLine updated = new CartLine(line == null ? null : line.id(), productId, Math.min(current + quantity, stock));
+            put(cart, updated);
+            return new Added(updated, updated.quantity() - current);
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    public void remove(String email, Long productId) {
+        UserCart cart = lock(email);
+        try {
+            CartLine line = cart.lines.get(productId);
+            if (line != null && line.quantity() > 0) put(cart, new CartLine(line.id(), productId, 0));
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    public void clear(String email) {
+        UserCart cart = lock(email);
+        try {
+            for (CartLine line : List.copyOf(cart.lines.values())) {
+                if (line.quantity() > 0) put(cart, new CartLine(line.id(), line.productId(), 0));
+            }
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the user's dirty lines inside the caller's transaction, so the caller's subsequent
+     * reads of cart_items see them. The cart stays locked until that transaction completes: on
+     * commit it is dropped from memory (the caller may have changed cart_items, so it is reloaded
+     * on next access); on rollback its lines are marked dirty again.
+     */
+    public void flushForUpdate(String email) {
+        if (!enabled) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("flushForUpdate requires an active transaction");
+        }
+        UserCart cart = lock(email);
+        List<PendingWrite> writes = List.of();
+        flushLock.lock();
+        try {
+            writes = snapshot(cart);
+            write(writes);
+        } catch (RuntimeException e) {
+            writes.forEach(w -> markDirty(cart, w.productId()));
+            cart.lock.unlock();
+            throw e;
+        } finally {
+            flushLock.unlock();
+        }
+        List<PendingWrite> written = writes;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        evict(email, cart);
+                    } else {
+                        written.forEach(w -> markDirty(cart, w.productId()));
+                    }
+                } finally {
+                    cart.lock.unlock();
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        flushLock.lock();
+        try {
+            List<PendingWrite> writes = new ArrayList<>();
+            for (Map.Entry<String, UserCart> e : carts.entrySet()) {
+                UserCart cart = e.getValue();
+                if (!cart.lock.tryLock()) continue;
+                try {
+                    List<PendingWrite> pending = snapshot(cart);
+                    writes.addAll(pending);
+                    // only clean carts are dropped, so a failed write below never targets an evicted cart
+                    if (pending.isEmpty() && now - cart.lastAccess > idleNanos) {
+                        evict(e.getKey(), cart);
+                    }
+                } finally {
+                    cart.lock.unlock();
+                }
+            }
+            if (writes.isEmpty()) return;
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(writes));
+            } catch (RuntimeException ex) {
+                log.warn("Cart flush of {} lines failed, will retry: {}", writes.size(), ex.getMessage());
+                for (PendingWrite w : writes) {
+                    w.cart().lock.lock();
+                    try {
+                        markDirty(w.cart(), w.productId());
+                    } finally {
+                        w.cart().lock.unlock();
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(enabled, carts.size(), dirtyCarts.get(), mutations.sum(), rowsWritten.sum(), flushes.sum());
+    }
+
+    /** Returns the user's cart, loading it on first access, with its lock held. */
+    private UserCart lock(String email) {
+        while (true) {
+            UserCart cart = carts.get(email);
+            if (cart == null) {
+                // loaded outside the map so the database read does not block other keys in its bin;
+                // discarded if any cart was evicted meanwhile, as its write-back may postdate the read
+                long seen = evictions.get();
+                UserCart loaded = load(email);
+                cart = carts.compute(email, (key, existing) ->
+                        existing != null ? existing : evictions.get() == seen ? loaded : null);
+                if (cart == null) continue;
+            }
+            cart.lock.lock();
+            if (!cart.evicted) {
+                cart.lastAccess = System.nanoTime();
+                return cart;
+            }
+            cart.lock.unlock();
+        }
+    }
+
+    private UserCart load(String email) {
+        Long userId = jdbcTemplate.query("SELECT id FROM users WHERE email = ?",
+                rs -> rs.next() ? rs.getLong(1) : null, email);
+        if (userId == null) throw new RuntimeException("User not found");
+        UserCart cart = new UserCart(userId);
+        jdbcTemplate.query("SELECT id, product_id, quantity FROM cart_items WHERE user_id = ? ORDER BY id",
+                rs -> {
+                    long productId = rs.getLong(2);
+                    cart.lines.put(productId, new CartLine(rs.getLong(1), productId, rs.getInt(3)));
+                }, userId);
+        return cart;
+    }
+
+    private void put(UserCart cart, CartLine line) {
+        cart.lines.put(line.productId(), line);
+        markDirty(cart, line.productId());
+        mutations.increment();
+    }
+
+    // caller holds the cart's lock
+    private void markDirty(UserCart cart, Long productId) {
+        if (cart.dirty.isEmpty()) dirtyCarts.incrementAndGet();
+        cart.dirty.add(productId);
+    }
+
+    // caller holds the cart's lock; the cart has no dirty lines
+    private void evict(String email, UserCart cart) {
+        cart.evicted = true;
+        evictions.incrementAndGet();
+        carts.remove(email, cart);
+    }
+
+    // caller holds the cart's lock
+    private List<PendingWrite> snapshot(UserCart cart) {
+        if (cart.dirty.isEmpty()) return List.of();
+        List<PendingWrite> writes = new ArrayList<>(cart.dirty.size());
+        for (Long productId : cart.dirty) {
+            CartLine line = cart.lines.get(productId);
+            writes.add(new PendingWrite(cart, productId, line == null ? 0 : line.quantity()));
+        }
+        cart.dirty.clear();
+        dirtyCarts.decrementAndGet();
+        Iterator<CartLine> it = cart.lines.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().quantity() == 0) it.remove();
+        }
+        return writes;
+    }
+
+    private void write(List<PendingWrite> writes) {
+        if (writes.isEmpty()) return;
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (PendingWrite w : writes) {
+            if (w.quantity() > 0) {
+                // the id is only used if the line is new
+                upserts.add(new Object[]{idBlockAllocator.next(IdBlockAllocator.CART_ITEMS), w.cart().userId,
+                        w.productId(), w.quantity()});
+            } else {
+                deletes.add(new Object[]{w.cart().userId, w.productId()});
+            }
+        }
+        for (int from = 0; from < deletes.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(DELETE_SQL, deletes.subList(from, Math.min(from + batchSize, deletes.size())));
+        }
+        for (int from = 0; from < upserts.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, upserts.subList(from, Math.min(from + batchSize, upserts.size())));
+        }
+        rowsWritten.add(writes.size());
+        flushes.increment();
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.repository.CartItemRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional group commit for checkout ({@code app.checkout.group-commit.enabled}). Requests that
+ * arrive within {@code window-ms} of each other (up to {@code max-batch}) are placed by one
+ * dispatcher thread in a single transaction, so the batch pays for one commit instead of one per
+ * order. Each order runs behind its own savepoint: one that fails is rolled back alone and its
+ * caller gets its exception, while the others commit together.
+ *
+ * <p>All carts of a batch are flushed and all their products' stock locks taken before the first
+ * order runs. If the batch transaction cannot commit, or an order fails in a way that dooms it,
+ * every order of the batch is retried in a transaction of its own.
+ *
+ * <p>A caller waits at most {@code timeout-ms} for its batch. One the dispatcher has not taken yet
+ * is withdrawn and refused with {@link CheckoutBusyException}; one already being placed gets a
+ * second window before it is refused the same way. An error in a batch fails that batch only; a
+ * dispatcher thread that has died anyway is restarted by the next checkout.
+ */
+@Service
+public class CheckoutBatcher {
+    private static final Logger log = LoggerFactory.getLogger(CheckoutBatcher.class);
+
+    private final OrderService orderService;
+    private final CartItemRepository cartItemRepository;
+    private final CartWriteBehindStore cartWriteBehindStore;
+    private final InventoryService inventoryService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final long timeoutMs;
+
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private volatile Thread dispatcher;
+    private volatile boolean stopping;
+
+    // taken by the dispatcher before it places the order, or by a caller that gave up waiting
+    private record Request(String email, String paymentMethod, FlashSaleService.Admission admission,
+                           CompletableFuture<Order> result, AtomicBoolean taken) {}
+
+    public record Stats(boolean enabled, int queued, long batches, long orders, double averageBatchSize, long fallbacks,
+                        long timeouts) {}
+
+    public CheckoutBatcher(OrderService orderService, CartItemRepository cartItemRepository,
+                           CartWriteBehindStore cartWriteBehindStore, InventoryService inventoryService,
+                           EntityManager entityManager, PlatformTransactionManager transactionManager,
+                           @Value("${app.checkout.group-commit.enabled:false}") boolean enabled,
+                           @Value("${app.checkout.group-commit.window-ms:5}") long windowMs,
+                           @Value("${app.checkout.group-commit.max-batch:64}") int maxBatch,
+                           @Value("${app.checkout.group-commit.timeout-ms:10000}") long timeoutMs) {
+        this.orderService = orderService;
+        this.cartItemRepository = cartItemRepository;
+        this.cartWriteBehindStore = cartWriteBehindStore;
+        this.inventoryService = inventoryService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxBatch = maxBatch;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled) ensureDispatcher();
+    }
+
+    @PreDestroy
+    void stop() {
+        stopping = true;
+        if (dispatcher != null) dispatcher.interrupt();
+    }
+
+    /**
+     * Places the order, through the next batch when group commit is enabled.
+     *
+     * @throws CheckoutBusyException if the batch does not complete in time
+     */
+    public Order placeOrder(String email, String paymentMethod, FlashSaleService.Admission admission) {
+        if (!enabled || stopping) return orderService.placeOrder(email, paymentMethod, admission);
+        ensureDispatcher();
+        Request request = new Request(email, paymentMethod, admission, new CompletableFuture<>(), new AtomicBoolean());
+        queue.add(request);
+        try {
+            try {
+                return request.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (request.taken().compareAndSet(false, true)) {
+                    queue.remove(request);
+                    timeouts.increment();
+                    throw new CheckoutBusyException();
+                }
+            }
+            // the dispatcher is placing it, within the database's own lock timeouts
+            return request.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Checkout for {} still running after {} ms", email, 2 * timeoutMs);
+            timeouts.increment();
+            throw new CheckoutBusyException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for checkout", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public Stats stats() {
+        long batchCount = batches.sum();
+        long orderCount = orders.sum();
+        return new Stats(enabled, queue.size(), batchCount, orderCount,
+                batchCount == 0 ? 0 : (double) orderCount / batchCount, fallbacks.sum(), timeouts.sum());
+    }
+
+    private void ensureDispatcher() {
+        Thread current = dispatcher;
+        if (current != null && current.isAlive()) return;
+        synchronized (this) {
+            if (stopping || (dispatcher != null && dispatcher.isAlive())) return;
+            if (dispatcher != null) log.error("Checkout dispatcher thread died, starting a new one");
+            Thread thread = new Thread(this::dispatch, "checkout-group-commit");
+            thread.setDaemon(true);
+            thread.start();
+            dispatcher = thread;
+        }
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                batch.removeIf(r -> !r.taken().compareAndSet(false, true));
+                if (!batch.isEmpty()) run(batch);
+            } catch (InterruptedException e) {
+                batch.forEach(r -> r.result().completeExceptionally(new IllegalStateException("Checkout is shutting down")));
+                return;
+            } catch (RuntimeException e) {
+                log.error("Checkout batch dispatch failed", e);
+                batch.forEach(r -> r.result().completeExceptionally(e));
+            } catch (Error e) {
+                log.error("Checkout batch dispatch failed", e);
+                batch.forEach(r -> r.result().completeExceptionally(e));
+                // the thread dies with the JVM's own errors; the next checkout starts another
+                if (e instanceof VirtualMachineError) throw e;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void run(List<Request> batch) {
+        batches.increment();
+        orders.add(batch.size());
+        if (batch.size() == 1) {
+            runAlone(batch.get(0));
+            return;
+        }
+        List<Runnable> completions = new ArrayList<>(batch.size());
+        List<Request> retryAlone = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> placeAll(batch, status, completions, retryAlone));
+        } catch (RuntimeException e) {
+            log.warn("Checkout batch of {} orders rolled back, placing them one by one: {}", batch.size(), e.toString());
+            fallbacks.increment();
+            batch.forEach(this::runAlone);
+            return;
+        }
+        completions.forEach(Runnable::run);
+        retryAlone.forEach(this::runAlone);
+    }
+
+    // callers are completed only after the batch has committed
+    private void placeAll(List<Request> batch, TransactionStatus status, List<Runnable> completions, List<Request> retryAlone) {
+        List<String> emails = batch.stream().map(Request::email).distinct().toList();
+        emails.forEach(cartWriteBehindStore::flushForUpdate);
+        inventoryService.lockProducts(cartItemRepository.findProductIdsByUserEmails(emails));
+
+        for (Request request : batch) {
+            // JDBC savepoints on the transaction's connection, which JdbcTemplate writes share
+            Session session = entityManager.unwrap(Session.class);
+            Savepoint savepoint = session.doReturningWork(Connection::setSavepoint);
+            try {
+                Order order = orderService.createOrder(request.email(), request.paymentMethod(), request.admission());
+                entityManager.flush();
+                session.doWork(connection -> connection.releaseSavepoint(savepoint));
+                completions.add(() -> request.result().complete(order));
+            } catch (RuntimeException e) {
+                // something below a transactional proxy failed: the batch cannot commit
+                if (status.isRollbackOnly()) throw e;
+                session.doWork(connection -> connection.rollback(savepoint));
+                // drop whatever the failed order left unflushed in the persistence context
+                entityManager.clear();
+                if (e instanceof StockLockConflictException) {
+                    retryAlone.add(request);
+                } else {
+                    completions.add(() -> request.result().completeExceptionally(e));
+                }
+            }
+        }
+    }
+
+    private void runAlone(Request request) {
+        try {
+            request.result().complete(orderService.placeOrder(request.email(), request.paymentMethod(), request.admission()));
+        } catch (RuntimeException e) {
+            request.result().completeExceptionally(e);
+        }
+    }
+}
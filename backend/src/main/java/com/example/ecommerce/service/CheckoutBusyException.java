@@ -0,0 +1,11 @@
+package com.example.ecommerce.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CheckoutBusyException extends RuntimeException {
+    public CheckoutBusyException() {
+        super("Checkout is busy, please retry");
+    }
+}
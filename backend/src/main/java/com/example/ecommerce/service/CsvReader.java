@@ -0,0 +1,81 @@
+package com.example.ecommerce.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: quoted fields may contain commas, doubled quotes and line
+ * breaks. Only the current record is held in memory.
+ */
+final class CsvReader implements Closeable {
+    private final BufferedReader in;
+    private long lineNumber = 1;
+    private long recordStartLine;
+
+    CsvReader(Reader reader) {
+        this.in = reader instanceof BufferedReader br ? br : new BufferedReader(reader, 1 << 16);
+    }
+
+    /** Returns the next record, or null at end of input. */
+    List<String> next() throws IOException {
+        int c = in.read();
+        while (c == '\r' || c == '\n') {
+            if (c == '\n') lineNumber++;
+            c = in.read();
+        }
+        if (c < 0) return null;
+        recordStartLine = lineNumber;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) throw new IOException("Unterminated quoted field starting on line " + recordStartLine);
+                if (c == '"') {
+                    int peek = in.read();
+                    if (peek == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = peek;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') lineNumber++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c < 0) {
+                fields.add(field.toString());
+                if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() != '\n') in.reset();
+                }
+                if (c >= 0) lineNumber++;
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+    }
+
+    /** Line on which the record last returned by {@link #next()} started. */
+    long recordLine() {
+        return recordStartLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+/**
+ * Streams whole tables to an output stream as NDJSON or CSV. Rows come from a forward-only JDBC
+ * cursor with a fixed fetch size and are written as soon as they are read, so memory use does
+ * not depend on table size.
+ */
+@Service
+public class ExportService {
+    public enum Format { NDJSON, CSV }
+
+    private static final Map<String, String> QUERIES = Map.of(
+            "products", "SELECT id, name, description, price, image_url, stock, created_at FROM products WHERE id > ? ORDER BY id",
+            "users", "SELECT id, name, email, role, created_at FROM users WHERE id > ? ORDER BY id",
+            "orders", "SELECT id, user_id, total_amount, status, payment_method, payment_status, " +
+                    "razorpay_order_id, razorpay_payment_id, created_at FROM orders WHERE id > ? ORDER BY id");
+
+    private final JdbcTemplate streamingTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ExportService(@Qualifier("exportDataSource") DataSource dataSource, ObjectMapper objectMapper,
+                         @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        // The MySQL driver only uses a server-side cursor for prepared statements with a positive
+        // fetch size on connections opened with useCursorFetch=true, which only the export pool sets.
+        this.streamingTemplate = new JdbcTemplate(dataSource);
+        this.streamingTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean supports(String table) {
+        return QUERIES.containsKey(table);
+    }
+
+    public void export(String table, Format format, OutputStream out) throws IOException {
+        String sql = QUERIES.get(table);
+        if (sql == null) throw new IllegalArgumentException("Unknown export: " + table);
+        OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+        try {
+            if (format == Format.CSV) {
+                Writer writer = new OutputStreamWriter(buffered, StandardCharsets.UTF_8);
+                streamingTemplate.query(sql, new CsvRowWriter(writer), 0L);
+                writer.flush();
+            } else {
+                JsonGenerator json = objectMapper.getFactory().createGenerator(buffered, JsonEncoding.UTF8);
+                json.setRootValueSeparator(null);
+                streamingTemplate.query(sql, (RowCallbackHandler) rs -> writeJson(rs, json), 0L);
+                json.flush();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buffered.flush();
+    }
+
+    private static void writeJson(ResultSet rs, JsonGenerator json) throws SQLException {
+        try {
+            ResultSetMetaData meta = rs.getMetaData();
+            json.writeStartObject();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                json.writeFieldName(meta.getColumnLabel(i).toLowerCase());
+                Object value = value(rs, meta, i);
+                if (value == null) json.writeNull();
+                else if (value instanceof BigDecimal d) json.writeNumber(d);
+                else if (value instanceof Number n) json.writeNumber(n.longValue());
+                else json.writeString(value.toString());
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object value(ResultSet rs, ResultSetMetaData meta, int column) throws SQLException {
+        return switch (meta.getColumnType(column)) {
+            // Instants are stored as UTC wall-clock time
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> {
+                LocalDateTime ts = rs.getObject(column, LocalDateTime.class);
+                yield ts == null ? null : ts.toInstant(ZoneOffset.UTC);
+            }
+            case Types.DECIMAL, Types.NUMERIC -> rs.getBigDecimal(column);
+            default -> rs.getObject(column);
+        };
+    }
+
+    private static final class CsvRowWriter implements RowCallbackHandler {
+        private final Writer writer;
+        private boolean headerWritten;
+
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            try {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                if (!headerWritten) {
+                    for (int i = 1; i <= columns; i++) {
+                        if (i > 1) writer.write(',');
+                        writer.write(meta.getColumnLabel(i).toLowerCase());
+                    }
+                    writer.write('\n');
+                    headerWritten = true;
+                }
+                for (int i = 1; i <= columns; i++) {
+                    if (i > 1) writer.write(',');
+                    Object value = value(rs, meta, i);
+                    if (value != null) writer.write(escape(value instanceof BigDecimal d ? d.toPlainString() : value.toString()));
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.ecommerce.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class FlashSaleBusyException extends RuntimeException {
+    private final Long productId;
+
+    public FlashSaleBusyException(Long productId) {
+        super("Too many requests for product " + productId + ", please retry");
+        this.productId = productId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.CartItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Admission control for flash sales. Checkout requests for a flagged product do not go straight
+ * to the products row: they join a bounded queue, and a single consumer thread hands out the
+ * sale's remaining units strictly in arrival order. Admission runs before checkout opens its
+ * transaction, so a caller gets an answer as soon as its turn comes without holding a database
+ * connection: admitted (and only then does it take stock in the database), sold out, or busy when
+ * the queue is full. Once a sale is sold out new requests are refused without queueing.
+ *
+ * <p>Units of an admitted checkout that fails are handed back to the consumer, which applies
+ * them before the next ticket. Cancellations after commit return stock to the database only; an
+ * admin re-flags the product to open a sale with the new stock.
+ */
+@Service
+public class FlashSaleService {
+    private static final Logger log = LoggerFactory.getLogger(FlashSaleService.class);
+    private static final int THROUGHPUT_WINDOW_SECONDS = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CartService cartService;
+    private final ArrayBlockingQueue<Ticket> queue;
+    private final long admissionTimeoutMs;
+    private final Map<Long, Sale> sales = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Ticket> returns = new ConcurrentLinkedQueue<>();
+    private final LongAdder queueFull = new LongAdder();
+    // admitted + refused tickets per second, indexed by epoch second modulo the array length
+    private final AtomicLongArray processedPerSecond = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS + 2);
+    private final AtomicLongArray processedSecond = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS + 2);
+    private Thread consumer;
+
+    private record Ticket(Sale sale, int quantity, CompletableFuture<Boolean> result) {}
+
+    private static final class Sale {
+        final Long productId;
+        final long initialUnits;
+        long remaining; // consumer thread only
+        volatile boolean soldOut;
+        final LongAdder admitted = new LongAdder();
+        final LongAdder refused = new LongAdder();
+        final LongAdder returned = new LongAdder();
+
+        Sale(Long productId, long units) {
+            this.productId = productId;
+            this.initialUnits = units;
+            this.remaining = units;
+            this.soldOut = units <= 0;
+        }
+    }
+
+    public record SaleStats(Long productId, long initialUnits, boolean soldOut, long admitted, long refused,
+                            long returned) {}
+
+    public record Stats(int queueDepth, int queueCapacity, long queueFullRejections, double ticketsPerSecond,
+                        List<SaleStats> sales) {}
+
+    /** Flash-sale units admitted to one checkout. */
+    public static final class Admission {
+        /** Admits nothing: enough for a cart without flash-sale products. */
+        public static final Admission NONE = new Admission(List.of());
+
+        private final List<Ticket> tickets;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Admission(List<Ticket> tickets) {
+            this.tickets = tickets;
+        }
+
+        /** Whether this admission covers {@code quantity} units of the product. */
+        public boolean covers(Long productId, int quantity) {
+            int units = 0;
+            for (Ticket t : tickets) {
+                if (t.sale().productId.equals(productId)) units += t.quantity();
+            }
+            return units >= quantity;
+        }
+    }
+
+    public FlashSaleService(JdbcTemplate jdbcTemplate, CartService cartService,
+                            @Value("${app.flash-sale.queue-capacity:10000}") int queueCapacity,
+                            @Value("${app.flash-sale.admission-timeout-ms:2000}") long admissionTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cartService = cartService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.admissionTimeoutMs = admissionTimeoutMs;
+    }
+
+    @PostConstruct
+    void start() {
+        consumer = new Thread(this::consume, "flash-sale-admission");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        consumer.interrupt();
+    }
+
+    /** Opens a sale for the product with its current stock as the unit pool. */
+    public void flag(Long productId) {
+        Integer stock = jdbcTemplate.query("SELECT stock FROM products WHERE id = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, productId);
+        if (stock == null) throw new RuntimeException("Product not found");
+        sales.put(productId, new Sale(productId, stock));
+        log.info("Flash sale opened for product {} with {} units", productId, stock);
+    }
+
+    public void unflag(Long productId) {
+        sales.remove(productId);
+    }
+
+    public boolean isFlagged(Long productId) {
+        return sales.containsKey(productId);
+    }
+
+    /**
+     * Admits the flash-sale products in the user's cart, then runs {@code checkout} with the
+     * admission; the admitted units are handed back if it throws. Call it outside any transaction:
+     * waiting for a decision holds no connection. Throws {@link InsufficientStockException} when a
+     * sale is sold out and {@link FlashSaleBusyException} when the queue is full or no decision
+     * arrives in time.
+     */
+    public <T> T withAdmission(String email, Function<Admission, T> checkout) {
+        Admission admission = admitCart(email);
+        try {
+            return checkout.apply(admission);
+        } catch (RuntimeException e) {
+            release(admission);
+            throw e;
+        }
+    }
+
+    private Admission admitCart(String email) {
+        if (sales.isEmpty()) return Admission.NONE;
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (CartItem item : cartService.getCart(email)) {
+            Long productId = item.getProduct().getId();
+            if (sales.containsKey(productId)) quantities.merge(productId, item.getQuantity(), Integer::sum);
+        }
+        if (quantities.isEmpty()) return Admission.NONE;
+        List<Ticket> admitted = new ArrayList<>(quantities.size());
+        try {
+            for (Map.Entry<Long, Integer> e : quantities.entrySet()) {
+                Ticket ticket = admit(e.getKey(), e.getValue());
+                if (ticket != null) admitted.add(ticket);
+            }
+        } catch (RuntimeException e) {
+            release(new Admission(admitted));
+            throw e;
+        }
+        return new Admission(admitted);
+    }
+
+    // waits for the product's admission decision; null if the product is not on sale
+    private Ticket admit(Long productId, int quantity) {
+        Sale sale = sales.get(productId);
+        if (sale == null) return null;
+        if (sale.soldOut) {
+            sale.refused.increment();
+            throw new InsufficientStockException(productId);
+        }
+        Ticket ticket = new Ticket(sale, quantity, new CompletableFuture<>());
+        if (!queue.offer(ticket)) {
+            queueFull.increment();
+            throw new FlashSaleBusyException(productId);
+        }
+        boolean admitted;
+        try {
+            admitted = ticket.result().get(admissionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // if the consumer decided in the meantime, cancel fails and its decision stands
+            if (ticket.result().cancel(false)) throw new FlashSaleBusyException(productId);
+            admitted = ticket.result().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ticket.result().cancel(false);
+            throw new FlashSaleBusyException(productId);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        if (!admitted) throw new InsufficientStockException(productId);
+        return ticket;
+    }
+
+    private void release(Admission admission) {
+        if (admission.released.compareAndSet(false, true)) returns.addAll(admission.tickets);
+    }
+
+    public Stats stats() {
+        long now = System.currentTimeMillis() / 1000;
+        long processed = 0;
+        for (int i = 0; i < processedSecond.length(); i++) {
+            long second = processedSecond.get(i);
+            if (second < now && second >= now - THROUGHPUT_WINDOW_SECONDS) processed += processedPerSecond.get(i);
+        }
+        List<SaleStats> saleStats = new ArrayList<>();
+        for (Sale s : sales.values()) {
+            saleStats.add(new SaleStats(s.productId, s.initialUnits, s.soldOut, s.admitted.sum(), s.refused.sum(),
+                    s.returned.sum()));
+        }
+        saleStats.sort(Comparator.comparing(SaleStats::productId));
+        return new Stats(queue.size(), queue.size() + queue.remainingCapacity(), queueFull.sum(),
+                (double) processed / THROUGHPUT_WINDOW_SECONDS, saleStats);
+    }
+
+    private void consume() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Ticket ticket;
+            try {
+                ticket = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            Ticket returned;
+            while ((returned = returns.poll()) != null) {
+                returned.sale().remaining += returned.quantity();
+                returned.sale().soldOut = false;
+                returned.sale().returned.add(returned.quantity());
+            }
+            if (ticket == null || ticket.result().isDone()) continue;
+
+            Sale sale = ticket.sale();
+            boolean admitted = sale.remaining >= ticket.quantity();
+            if (admitted) {
+                sale.remaining -= ticket.quantity();
+                if (sale.remaining == 0) sale.soldOut = true;
+            }
+            if (ticket.result().complete(admitted)) {
+                (admitted ? sale.admitted : sale.refused).increment();
+            } else if (admitted) {
+                // the caller gave up first
+                sale.remaining += ticket.quantity();
+                sale.soldOut = false;
+            }
+            recordProcessed();
+        }
+    }
+
+    private void recordProcessed() {
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % processedSecond.length());
+        if (processedSecond.get(slot) != second) {
+            processedPerSecond.set(slot, 0);
+            processedSecond.set(slot, second);
+        }
+        processedPerSecond.incrementAndGet(slot);
+    }
+}
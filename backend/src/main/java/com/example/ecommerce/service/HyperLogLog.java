@@ -0,0 +1,128 @@
+package com.example.ecommerce.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HyperLogLog distinct counter with 2^precision registers, estimating with a relative standard
+ * error of about 1.04 / sqrt(2^precision). Adding a value twice changes nothing, and sketches of
+ * the same precision merge by taking each register's maximum, so a sketch of a range is the merge
+ * of the sketches of its parts.
+ *
+ * <p>{@link #toBytes()} stores either the registers packed in 6 bits each or, while few are set,
+ * just the set ones as (index, value) pairs, whichever is smaller. Not thread-safe.
+ */
+final class HyperLogLog {
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) throw new IllegalArgumentException("precision must be between 4 and 16");
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    int precision() {
+        return precision;
+    }
+
+    double standardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /** Returns whether the sketch changed. */
+    boolean add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - precision));
+        // leading zeros of the remaining bits, plus one; the low sentinel bit caps it
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rank <= registers[index]) return false;
+        registers[index] = rank;
+        return true;
+    }
+
+    void merge(HyperLogLog other) {
+        if (other.precision != precision) throw new IllegalArgumentException("Cannot merge sketches of different precision");
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) zeros++;
+        }
+        double alpha = switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+        double estimate = alpha * m * m / sum;
+        // small cardinalities: linear counting over the empty registers is more accurate
+        if (estimate <= 2.5 * m && zeros > 0) estimate = m * Math.log((double) m / zeros);
+        return Math.round(estimate);
+    }
+
+    HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    byte[] toBytes() {
+        int set = 0;
+        for (byte register : registers) {
+            if (register != 0) set++;
+        }
+        int denseSize = 2 + (registers.length * 6 + 7) / 8;
+        if (2 + set * 3 < denseSize) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 + set * 3).put((byte) precision).put(SPARSE);
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) buffer.putShort((short) i).put(registers[i]);
+            }
+            return buffer.array();
+        }
+        byte[] bytes = new byte[denseSize];
+        bytes[0] = (byte) precision;
+        bytes[1] = DENSE;
+        for (int i = 0; i < registers.length; i++) {
+            int bit = i * 6;
+            int value = registers[i] << (bit & 7);
+            bytes[2 + (bit >> 3)] |= (byte) value;
+            if ((bit & 7) > 2) bytes[3 + (bit >> 3)] |= (byte) (value >> 8);
+        }
+        return bytes;
+    }
+
+    static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog(bytes[0]);
+        if (bytes[1] == SPARSE) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+            while (buffer.remaining() >= 3) {
+                sketch.registers[buffer.getShort() & 0xFFFF] = buffer.get();
+            }
+        } else {
+            for (int i = 0; i < sketch.registers.length; i++) {
+                int bit = i * 6;
+                int value = (bytes[2 + (bit >> 3)] & 0xFF) >>> (bit & 7);
+                if ((bit & 7) > 2) value |= (bytes[3 + (bit >> 3)] & 0xFF) << (8 - (bit & 7));
+                sketch.registers[i] = (byte) (value & 0x3F);
+            }
+        }
+        return sketch;
+    }
+
+    // SplitMix64 finalizer: ids are sequential, the registers need uniformly spread bits
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per {@code Idempotency-Key} (scoped by endpoint and user) and
+ * answers retries with the stored response. A duplicate arriving while the first request runs in
+ * this JVM waits for its result in memory; recently finished keys are answered from memory too,
+ * and older ones (or ones handled by another instance) from the idempotency_keys table.
+ *
+ * <p>Responses with a 5xx status are not stored, so the client's retry runs the request again.
+ * A key whose first request is still running elsewhere gets 409, and a key reused with a different
+ * request body gets 422. The in-progress claim is a lease of {@code app.idempotency.lease-seconds}
+ * (longer than any request should take): if the instance running the first request dies, a retry
+ * after the lease takes the key over instead of getting 409 until the key expires.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lease;
+    private final long cacheNanos;
+    private final long waitMs;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private record StoredResponse(int status, String body) {}
+
+    private record StoredRow(String requestHash, StoredResponse response) {}
+
+    private static final class Entry {
+        final String requestHash;
+        final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE; // System.nanoTime() deadline, set once stored
+
+        Entry(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+
+    public IdempotencyService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                              @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${app.idempotency.lease-seconds:60}") long leaseSeconds,
+                              @Value("${app.idempotency.cache-seconds:600}") long cacheSeconds,
+                              @Value("${app.idempotency.wait-ms:10000}") long waitMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.cacheNanos = TimeUnit.SECONDS.toNanos(cacheSeconds);
+        this.waitMs = waitMs;
+    }
+
+    /**
+     * Runs {@code action} unless a response for {@code key} already exists, in which case that
+     * response is returned with an {@value #REPLAYED_HEADER} header. Without a key the action
+     * simply runs.
+     */
+    public ResponseEntity<?> execute(String scope, String email, String key, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null) return action.get();
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("error", HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+        String id = sha256(scope + '\n' + email + '\n' + key);
+        String requestHash = sha256(toJson(request));
+
+        Entry entry = new Entry(requestHash);
+        Entry existing;
+        while ((existing = entries.putIfAbsent(id, entry)) != null) {
+            if (existing.expiresAt > System.nanoTime()) return awaitReplay(existing, requestHash);
+            entries.remove(id, existing);
+        }
+
+        StoredResponse stored;
+        ResponseEntity<?> result;
+        try {
+            String token = UUID.randomUUID().toString();
+            StoredRow row = claim(id, token, scope, email, requestHash);
+            if (row == null) {
+                result = runAndStore(id, token, action);
+                stored = toStored(result);
+            } else if (!row.requestHash().equals(requestHash)) {
+                result = mismatch();
+                stored = null;
+            } else if (row.response() == null) {
+                result = inProgress();
+                stored = null;
+            } else {
+                stored = row.response();
+                result = replay(stored);
+            }
+        } catch (RuntimeException e) {
+            entries.remove(id, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+
+        if (stored != null && stored.status() < 500) {
+            entry.expiresAt = System.nanoTime() + cacheNanos;
+            entry.response.complete(stored);
+        } else {
+            // waiters get the same answer, later retries look again
+            entries.remove(id, entry);
+            entry.response.complete(stored != null ? stored : toStored(result));
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        entries.entrySet().removeIf(e -> e.getValue().expiresAt <= now);
+        int deleted = jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < ?", utcNow());
+        if (deleted > 0) log.info("Purged {} expired idempotency keys", deleted);
+    }
+
+    private ResponseEntity<?> runAndStore(String id, String token, Supplier<ResponseEntity<?>> action) {
+        ResponseEntity<?> result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            release(id, token);
+            throw e;
+        }
+        StoredResponse stored = toStored(result);
+        if (stored.status() < 500) {
+            int updated = jdbcTemplate.update("UPDATE idempotency_keys SET response_status = ?, response_body = ?, " +
+                            "claim_token = NULL, expires_at = ? WHERE id = ? AND claim_token = ?",
+                    stored.status(), stored.body(), utcNow().plus(ttl), id, token);
+            if (updated == 0) log.warn("Idempotency claim {} outlived its lease and was taken over", id);
+        } else {
+            release(id, token);
+        }
+        return result;
+    }
+
+    private void release(String id, String token) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE id = ? AND claim_token = ?", id, token);
+    }
+
+    /**
+     * Inserts the in-progress row under a lease; returns null if this call owns the key, else the
+     * existing row. A row whose lease or retention has run out is deleted and claimed anew.
+     */
+    private StoredRow claim(String id, String token, String scope, String email, String requestHash) {
+        LocalDateTime now = utcNow();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                jdbcTemplate.update("INSERT INTO idempotency_keys (id, scope, user_email, request_hash, claim_token, " +
+                        "created_at, expires_at) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        id, scope, email, requestHash, token, now, now.plus(lease));
+                return null;
+            } catch (DuplicateKeyException e) {
+                StoredRow row = jdbcTemplate.query(
+                        "SELECT request_hash, response_status, response_body, expires_at FROM idempotency_keys WHERE id = ?",
+                        rs -> {
+                            if (!rs.next()) return null;
+                            if (rs.getObject(4, LocalDateTime.class).isBefore(now)) return null;
+                            Integer status = rs.getObject(2, Integer.class);
+                            return new StoredRow(rs.getString(1), status == null ? null : new StoredResponse(status, rs.getString(3)));
+                        }, id);
+                if (row != null) return row;
+                if (attempt > 0) return new StoredRow(requestHash, null);
+                // lease or retention ran out but not purged yet, or deleted after a failure: take the key over
+                jdbcTemplate.update("DELETE FROM idempotency_keys WHERE id = ? AND expires_at < ?", id, now);
+            }
+        }
+    }
+
+    private ResponseEntity<?> awaitReplay(Entry entry, String requestHash) {
+        if (!entry.requestHash.equals(requestHash)) return mismatch();
+        try {
+            return replay(entry.response.get(waitMs, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            return inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return inProgress();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Original request for this " + HEADER + " failed", e.getCause());
+        }
+    }
+
+    private StoredResponse toStored(ResponseEntity<?> response) {
+        return new StoredResponse(response.getStatusCode().value(), response.getBody() == null ? null : toJson(response.getBody()));
+    }
+
+    private static ResponseEntity<?> replay(StoredResponse stored) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.status()).header(REPLAYED_HEADER, "true");
+        if (stored.body() == null) return builder.build();
+        return builder.contentType(MediaType.APPLICATION_JSON).body(stored.body());
+    }
+
+    private static ResponseEntity<?> mismatch() {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of("error", HEADER + " was already used for a different request"));
+    }
+
+    private static ResponseEntity<?> inProgress() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "A request with this " + HEADER + " is still being processed"));
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static LocalDateTime utcNow() {
+        return UtcDateTimes.utc(Instant.now());
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.ecommerce.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stock accounting for checkout. Stock is taken with a conditional
+ * {@code UPDATE ... WHERE stock >= ?}, so the database never lets it go negative, even across
+ * application instances. Within one instance, orders first take a striped lock per product (held
+ * until their transaction completes): requests for the same SKU queue in memory instead of each
+ * holding a connection while blocked on the row lock, and requests for different SKUs only meet
+ * on the rare stripe collision. Stripes and rows are always taken in ascending order, so two
+ * multi-line orders cannot deadlock.
+ */
+@Service
+public class InventoryService {
+    private static final String TAKE_SQL = "UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?";
+    private static final String RETURN_SQL = "UPDATE products SET stock = stock + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductCache productCache;
+    private final ReentrantLock[] stripes;
+
+    public record StockLine(Long productId, int quantity) {}
+
+    public InventoryService(JdbcTemplate jdbcTemplate, ProductCache productCache,
+                            @Value("${app.inventory.lock-stripes:256}") int stripeCount) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productCache = productCache;
+        this.stripes = new ReentrantLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new ReentrantLock();
+    }
+
+    /**
+     * Takes stock for every line in the caller's transaction, or throws
+     * {@link InsufficientStockException} for the first product that is short (the transaction
+     * rollback then returns whatever was already taken).
+     */
+    public void reserve(Collection<StockLine> lines) {
+        Map<Long, Integer> quantities = merge(lines);
+        lockUntilCompletion(quantities.keySet());
+        for (Map.Entry<Long, Integer> e : quantities.entrySet()) {
+            if (jdbcTemplate.update(TAKE_SQL, e.getValue(), e.getKey(), e.getValue()) == 0) {
+                throw new InsufficientStockException(e.getKey());
+            }
+        }
+    }
+
+    /** Puts stock back in the caller's transaction, e.g. for a canceled order. */
+    public void release(Collection<StockLine> lines) {
+        Map<Long, Integer> quantities = merge(lines);
+        lockUntilCompletion(quantities.keySet());
+        for (Map.Entry<Long, Integer> e : quantities.entrySet()) {
+            jdbcTemplate.update(RETURN_SQL, e.getValue(), e.getKey());
+        }
+    }
+
+    /**
+     * Takes the stock locks of these products now, held until the transaction completes. Group
+     * commit calls this for all orders of a batch up front, so that their later reserves do not
+     * take stripes out of order.
+     */
+    public void lockProducts(Collection<Long> productIds) {
+        lockUntilCompletion(new TreeSet<>(productIds));
+    }
+
+    private static Map<Long, Integer> merge(Collection<StockLine> lines) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockLine line : lines) {
+            if (line.quantity() <= 0) throw new IllegalArgumentException("Quantity must be positive");
+            quantities.merge(line.productId(), line.quantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    private void lockUntilCompletion(Collection<Long> productIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Stock changes require an active transaction");
+        }
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Long id : productIds) indexes.add(Math.floorMod(Long.hashCode(id) * 0x9E3779B9, stripes.length));
+        // a transaction that already holds stripes (a group-commit batch) must not block on a lower one
+        int highestHeld = -1;
+        for (int i = stripes.length - 1; i >= 0 && highestHeld < 0; i--) {
+            if (stripes[i].isHeldByCurrentThread()) highestHeld = i;
+        }
+        List<Integer> taken = new ArrayList<>();
+        for (int i : indexes) {
+            if (i < highestHeld && !stripes[i].isHeldByCurrentThread()) {
+                if (!stripes[i].tryLock()) {
+                    taken.forEach(t -> stripes[t].unlock());
+                    throw new StockLockConflictException();
+                }
+            } else {
+                stripes[i].lock();
+            }
+            taken.add(i);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                productIds.forEach(productCache::invalidate);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                for (int i : indexes.descendingSet()) stripes[i].unlock();
+            }
+        });
+    }
+}
@@ -3,12 +3,20 @@ package com.example.ecommerce.service;
 import java.math.BigDecimal;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.ecommerce.dto.CursorPageDTO;
+import com.example.ecommerce.dto.OrderView;
+import com.example.ecommerce.event.OrderPlacedEvent;
+import com.example.ecommerce.event.OrderStatusChangedEvent;
 import com.example.ecommerce.model.CartItem;
 import com.example.ecommerce.model.Order;
 import com.example.ecommerce.model.OrderItem;
+import com.example.ecommerce.model.OrderStatus;
 import com.example.ecommerce.model.User;
 import com.example.ecommerce.repository.CartItemRepository;
 import com.example.ecommerce.repository.OrderItemRepository;
@@ -17,31 +25,95 @@ import com.example.ecommerce.repository.UserRepository;
 
 @Service
 public class OrderService {
+    private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+
+    public static final int MAX_PAGE_SIZE = 50;
+
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
     private final CartItemRepository cartItemRepository;
     private final UserRepository userRepository;
+    private final ProductCache productCache;
+    private final OutboxService outboxService;
+    private final CartWriteBehindStore cartWriteBehindStore;
+    private final InventoryService inventoryService;
+    private final FlashSaleService flashSaleService;
 
-    public OrderService(OrderRepository orderRepository, OrderItemRepository orderItemRepository, CartItemRepository cartItemRepository, UserRepository userRepository) {
+    public OrderService(OrderRepository orderRepository, OrderItemRepository orderItemRepository, CartItemRepository cartItemRepository, UserRepository userRepository,
+                        ProductCache productCache, OutboxService outboxService, CartWriteBehindStore cartWriteBehindStore,
+                        InventoryService inventoryService, FlashSaleService flashSaleService) {
         this.orderRepository = orderRepository;
         this.orderItemRepository = orderItemRepository;
         this.cartItemRepository = cartItemRepository;
         this.userRepository = userRepository;
+        this.productCache = productCache;
+        this.outboxService = outboxService;
+        this.cartWriteBehindStore = cartWriteBehindStore;
+        this.inventoryService = inventoryService;
+        this.flashSaleService = flashSaleService;
     }
 
-    public List<Order> listMyOrders(String email) {
-        User user = userRepository.findByEmail(email).orElseThrow();
-        List<Order> orders = orderRepository.findByUserOrderByCreatedAtDesc(user);
-        // Force initialization of items
-        orders.forEach(order -> order.getItems().size());
-        return orders;
+    public List<OrderView> listMyOrders(String email) {
+        return OrderView.fromRows(orderRepository.findLineRowsByUserEmail(email));
     }
 
+    /**
+     * One keyset page of the customer's orders, newest first, in two queries whatever the page
+     * holds: the page's order ids, then their lines and products.
+     */
+    public CursorPageDTO<OrderView> listMyOrdersPage(String email, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<Long> ids;
+        if (cursor == null || cursor.isBlank()) {
+            ids = orderRepository.findNewestIdsByUserEmail(email, Limit.of(limit + 1));
+        } else {
+            String[] key = KeysetCursor.decode(cursor);
+            ids = orderRepository.findIdsByUserEmailBefore(email, KeysetCursor.parseInstant(key[0]),
+                    KeysetCursor.parseId(key[1]), Limit.of(limit + 1));
+        }
+        boolean more = ids.size() > limit;
+        if (more) ids = ids.subList(0, limit);
+        if (ids.isEmpty()) return new CursorPageDTO<>(List.of(), null);
+
+        List<OrderView> page = OrderView.fromRows(orderRepository.findLineRowsByOrderIds(ids));
+        if (!more) return new CursorPageDTO<>(page, null);
+        OrderView last = page.get(page.size() - 1);
+        return new CursorPageDTO<>(page, KeysetCursor.encode(last.createdAt().toString(), last.id()));
+    }
+
+    /**
+     * Places the user's cart as an order. Flash-sale products in it must be covered by
+     * {@code admission}, taken before the transaction (see {@link FlashSaleService#withAdmission}).
+     */
     @Transactional
-    public Order placeOrder(String email, String paymentMethod) {
+    public Order placeOrder(String email, String paymentMethod, FlashSaleService.Admission admission) {
+        return createOrder(email, paymentMethod, admission);
+    }
+
+    /**
+     * The body of {@link #placeOrder}, run in the caller's transaction. It carries no
+     * {@code @Transactional} on purpose: CheckoutBatcher runs several orders in one transaction
+     * and rolls a failing one back to its savepoint, which must not mark the whole batch
+     * rollback-only.
+     */
+    public Order createOrder(String email, String paymentMethod, FlashSaleService.Admission admission) {
+        // Pending in-memory cart edits must be in cart_items before the cart is read
+        cartWriteBehindStore.flushForUpdate(email);
         User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
         List<CartItem> items = cartItemRepository.findByUser(user);
         if (items.isEmpty()) throw new IllegalStateException("Cart is empty");
+        CartService.resolveProducts(items, productCache);
+        // Flash-sale products are rationed in memory first, so only admitted orders reach the rows;
+        // a cart that changed or a sale that opened since the admission is sent back to retry
+        for (CartItem ci : items) {
+            Long productId = ci.getProduct().getId();
+            if (flashSaleService.isFlagged(productId) && !admission.covers(productId, ci.getQuantity())) {
+                throw new FlashSaleBusyException(productId);
+            }
+        }
+        inventoryService.reserve(items.stream()
+                .map(ci -> new InventoryService.StockLine(ci.getProduct().getId(), ci.getQuantity()))
+                .toList());
         
         // Validate payment method
         if (paymentMethod == null || (!"COD".equals(paymentMethod) && !"RAZORPAY".equals(paymentMethod))) {
@@ -64,8 +136,6 @@ public class OrderService {
             order.setPaymentStatus("PENDING");
         }
         
-        order.setTotalAmount(BigDecimal.ZERO);
-        order = orderRepository.save(order);
         BigDecimal total = BigDecimal.ZERO;
         for (CartItem ci : items) {
             OrderItem oi = new OrderItem();
@@ -76,11 +146,124 @@ public class OrderService {
             total = total.add(ci.getProduct().getPrice().multiply(BigDecimal.valueOf(ci.getQuantity())));
         }
         order.setTotalAmount(total);
+        // Saved once, complete: the order and its items are flushed as batched inserts
         order = orderRepository.save(order);
         cartItemRepository.deleteByUser(user);
+        // Downstream work (indexes, analytics, notifications) runs from the outbox after commit
+        outboxService.append(order.getId(), OrderPlacedEvent.of(order));
+        return order;
+    }
+
+    /**
+     * Cancels the order and returns its stock; canceling an already canceled order changes nothing.
+     * Orders that have shipped can no longer be canceled.
+     */
+    @Transactional
+    public Order cancelOrder(Long orderId) {
+        Order order = findById(orderId);
+        String previousStatus = order.getStatus();
+        List<InventoryService.StockLine> lines = stockLines(order);
+        if (orderRepository.markCanceled(orderId) == 1) {
+            inventoryService.release(lines);
+            Order canceled = findById(orderId);
+            outboxService.append(orderId, OrderStatusChangedEvent.of(canceled, previousStatus, canceled.getPaymentStatus()));
+            return canceled;
+        }
+        Order current = findById(orderId);
+        if (!OrderStatus.CANCELED.name().equals(current.getStatus())) {
+            throw new IllegalArgumentException("Cannot cancel order " + orderId + " in status " + current.getStatus());
+        }
+        return current;
+    }
+
+    /**
+     * Sets a status other than CANCELED (which goes through {@link #cancelOrder}). Transitions not
+     * allowed by {@link OrderStatus} are rejected with an IllegalArgumentException.
+     */
+    @Transactional
+    public Order updateStatus(Long orderId, String status) {
+        OrderStatus target = OrderStatus.parse(status);
+        if (target == OrderStatus.CANCELED) return cancelOrder(orderId);
+        Order order = findById(orderId);
+        String previousStatus = order.getStatus();
+        if (target.name().equals(previousStatus)) return order;
+        if (!OrderStatus.parse(previousStatus).canBecome(target)) {
+            throw new IllegalArgumentException("Cannot change order " + orderId + " from " + previousStatus + " to " + target);
+        }
+        order.setStatus(target.name());
+        order = orderRepository.save(order);
+        outboxService.append(orderId, OrderStatusChangedEvent.of(order, previousStatus, order.getPaymentStatus()));
         return order;
     }
 
+    /**
+     * Ties a Razorpay order to the buyer's own order awaiting payment, so that only a payment made
+     * against it can pay this order.
+     */
+    @Transactional
+    public void attachRazorpayOrder(Long orderId, String email, String razorpayOrderId) {
+        Order order = findById(orderId);
+        if (!order.getUser().getEmail().equals(email)) throw new RuntimeException("Order not found");
+        if (!"RAZORPAY".equals(order.getPaymentMethod()) || orderRepository.attachRazorpayOrder(orderId, razorpayOrderId) == 0) {
+            throw new IllegalStateException("Order " + orderId + " is not awaiting an online payment");
+        }
+    }
+
+    /**
+     * Records a verified online payment on the buyer's own order. Returns false, changing nothing,
+     * if the order already holds this payment. The payment must have been made against the
+     * Razorpay order attached to this order, else an IllegalArgumentException is thrown. Only a
+     * PENDING order can be paid; for any other (e.g. one canceled and restocked before the payment
+     * arrived) an IllegalStateException is thrown and the payment has to be refunded.
+     */
+    @Transactional
+    public boolean markPaid(Long orderId, String email, String razorpayOrderId, String razorpayPaymentId, String razorpaySignature) {
+        Order order = findById(orderId);
+        if (!order.getUser().getEmail().equals(email)) throw new RuntimeException("Order not found");
+        if ("PAID".equals(order.getPaymentStatus()) && razorpayPaymentId.equals(order.getRazorpayPaymentId())) return false;
+        if (!razorpayOrderId.equals(order.getRazorpayOrderId())) {
+            throw new IllegalArgumentException("Payment " + razorpayPaymentId + " was not made for order " + orderId);
+        }
+        String previousStatus = order.getStatus();
+        String previousPaymentStatus = order.getPaymentStatus();
+        if (orderRepository.markPaid(orderId, razorpayOrderId, razorpayPaymentId, razorpaySignature) == 0) {
+            Order current = findById(orderId);
+            if ("PAID".equals(current.getPaymentStatus()) && razorpayPaymentId.equals(current.getRazorpayPaymentId())) return false;
+            throw new IllegalStateException("Order " + orderId + " in status " + current.getStatus()
+                    + " with payment " + current.getPaymentStatus() + " can no longer be paid");
+        }
+        outboxService.append(orderId, OrderStatusChangedEvent.of(findById(orderId), previousStatus, previousPaymentStatus));
+        return true;
+    }
+
+    /** Marks an order whose payment could not be recorded, for an admin to settle by hand. */
+    @Transactional
+    public void flagPaymentReview(Long orderId, String razorpayPaymentId) {
+        if (orderRepository.flagPaymentReview(orderId) == 1) {
+            log.warn("Order {} flagged for payment review: payment {} could not be recorded", orderId, razorpayPaymentId);
+        }
+    }
+
+    /** Records a failed online payment for the buyer's own unpaid order and returns its stock. */
+    @Transactional
+    public void markPaymentFailed(Long orderId, String email) {
+        Order order = findById(orderId);
+        if (!order.getUser().getEmail().equals(email)) throw new RuntimeException("Order not found");
+        String previousStatus = order.getStatus();
+        String previousPaymentStatus = order.getPaymentStatus();
+        List<InventoryService.StockLine> lines = stockLines(order);
+        if (orderRepository.markPaymentFailed(orderId) == 1) {
+            inventoryService.release(lines);
+            outboxService.append(orderId, OrderStatusChangedEvent.of(findById(orderId), previousStatus, previousPaymentStatus));
+        }
+    }
+
+    private static List<InventoryService.StockLine> stockLines(Order order) {
+        return order.getItems().stream()
+                .map(oi -> new InventoryService.StockLine(oi.getProduct().getId(), oi.getQuantity()))
+                .toList();
+    }
+
     public Order findById(Long id) {
         return orderRepository.findById(id).orElseThrow(() -> new RuntimeException("Order not found"));
     }
@@ -0,0 +1,250 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.example.ecommerce.service.UtcDateTimes.utc;
+
+/**
+ * Drains outbox_events in batches and publishes each event to the application's
+ * {@code @EventListener}s on a worker pool. A poller thread claims up to {@code batch-size}
+ * pending events by stamping them with a claim token and lease; commits that append events wake
+ * it immediately, otherwise it polls every {@code poll-interval-ms}. Events are spread over the
+ * workers by aggregate id, so the events of one order are handled in order by one worker.
+ *
+ * <p>Delivery is at least once: an event whose listener throws is retried with backoff (and
+ * marked FAILED after {@code max-attempts}), and an event whose lease runs out before it is
+ * marked done is claimed again. Handled events are deleted after the retention period.
+ *
+ * <p>Order holds across retries: when an event fails, the later events of its aggregate in the
+ * batch are handed back unhandled, and no event is claimed while an earlier one of its aggregate
+ * is waiting out a backoff or held by another claim. Once an event is marked FAILED, the events
+ * after it go ahead.
+ */
+@Component
+public class OutboxDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OutboxEventRepository outboxEventRepository;
+    private final int workers;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long leaseSeconds;
+    private final int maxAttempts;
+    private final long retentionHours;
+
+    private final Semaphore wakeUps = new Semaphore(0);
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private ExecutorService workerPool;
+    private Thread poller;
+
+    private record Claimed(long id, String type, long aggregateId, String payload, int attempts) {}
+
+    // errors of the events that failed, and the events left unhandled behind a failure
+    private record Outcome(Map<Long, String> errors, Set<Long> released) {}
+
+    public record Stats(long pending, long failed, long dispatched, long failures) {}
+
+    public OutboxDispatcher(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+                            OutboxEventRepository outboxEventRepository,
+                            @Value("${app.outbox.workers:4}") int workers,
+                            @Value("${app.outbox.batch-size:200}") int batchSize,
+                            @Value("${app.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                            @Value("${app.outbox.lease-seconds:60}") long leaseSeconds,
+                            @Value("${app.outbox.max-attempts:10}") int maxAttempts,
+                            @Value("${app.outbox.retention-hours:72}") long retentionHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.outboxEventRepository = outboxEventRepository;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.leaseSeconds = leaseSeconds;
+        this.maxAttempts = maxAttempts;
+        this.retentionHours = retentionHours;
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "outbox-worker-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        poller = new Thread(this::poll, "outbox-poller");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        poller.interrupt();
+        workerPool.shutdownNow();
+    }
+
+    /** Makes the poller look for new events now instead of at its next interval. */
+    public void wakeUp() {
+        if (wakeUps.availablePermits() == 0) wakeUps.release();
+    }
+
+    public Stats stats() {
+        return new Stats(outboxEventRepository.countByStatus("PENDING"), outboxEventRepository.countByStatus("FAILED"),
+                dispatched.sum(), failures.sum());
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.purge-interval-ms:3600000}")
+    public void purgeDone() {
+        int deleted = jdbcTemplate.update("DELETE FROM outbox_events WHERE status = 'DONE' AND processed_at < ?",
+                utc(Instant.now().minusSeconds(retentionHours * 3600)));
+        if (deleted > 0) log.info("Purged {} dispatched outbox events", deleted);
+    }
+
+    private void poll() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                wakeUps.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeUps.drainPermits();
+                while (drainBatch() == batchSize) {
+                    // a full batch: there may be more waiting
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Outbox dispatch failed, will retry: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** Claims, dispatches and settles one batch; returns how many events it claimed. */
+    int drainBatch() throws InterruptedException {
+        List<Claimed> batch = claim();
+        if (batch.isEmpty()) return 0;
+
+        List<List<Claimed>> partitions = new ArrayList<>();
+        for (int i = 0; i < workers; i++) partitions.add(new ArrayList<>());
+        for (Claimed event : batch) {
+            partitions.get((int) Math.floorMod(event.aggregateId(), (long) workers)).add(event);
+        }
+        List<Callable<Outcome>> tasks = new ArrayList<>();
+        for (List<Claimed> partition : partitions) {
+            if (!partition.isEmpty()) tasks.add(() -> dispatch(partition));
+        }
+
+        List<Object[]> done = new ArrayList<>();
+        List<Object[]> failed = new ArrayList<>();
+        List<Object[]> released = new ArrayList<>();
+        Map<Long, String> errors = new HashMap<>();
+        Set<Long> unhandled = new HashSet<>();
+        for (Future<Outcome> result : workerPool.invokeAll(tasks)) {
+            try {
+                errors.putAll(result.get().errors());
+                unhandled.addAll(result.get().released());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        LocalDateTime now = utc(Instant.now());
+        for (Claimed event : batch) {
+            String error = errors.get(event.id());
+            if (unhandled.contains(event.id())) {
+                released.add(new Object[]{event.id()});
+            } else if (error == null) {
+                done.add(new Object[]{now, event.id()});
+            } else {
+                long backoffSeconds = Math.min(1L << Math.min(event.attempts(), 12), 3600);
+                failed.add(new Object[]{maxAttempts, utc(Instant.now().plusSeconds(backoffSeconds)), error, event.id()});
+            }
+        }
+        if (!done.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE outbox_events SET status = 'DONE', processed_at = ?, claim_token = NULL, " +
+                    "claimed_until = NULL WHERE id = ?", done);
+        }
+        if (!failed.isEmpty()) {
+            // status is assigned first: MySQL evaluates SET clauses left to right
+            jdbcTemplate.batchUpdate("UPDATE outbox_events SET status = CASE WHEN attempts + 1 >= ? THEN 'FAILED' ELSE 'PENDING' END, " +
+                    "attempts = attempts + 1, available_at = ?, last_error = ?, claim_token = NULL, claimed_until = NULL " +
+                    "WHERE id = ?", failed);
+        }
+        if (!released.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE outbox_events SET claim_token = NULL, claimed_until = NULL WHERE id = ?", released);
+        }
+        dispatched.add(done.size());
+        failures.add(failed.size());
+        return batch.size();
+    }
+
+    private List<Claimed> claim() {
+        String token = UUID.randomUUID().toString();
+        LocalDateTime now = utc(Instant.now());
+        // held: the first event of each aggregate that is backing off or claimed elsewhere; the derived
+        // table is materialized (GROUP BY), which lets MySQL read the table it updates
+        int claimed = jdbcTemplate.update("UPDATE outbox_events SET claim_token = ?, claimed_until = ? " +
+                        "WHERE status = 'PENDING' AND available_at <= ? AND (claimed_until IS NULL OR claimed_until < ?) " +
+                        "AND NOT EXISTS (SELECT 1 FROM (SELECT aggregate_id, MIN(id) AS first_id FROM outbox_events " +
+                        "WHERE status = 'PENDING' AND (available_at > ? OR claimed_until >= ?) GROUP BY aggregate_id) held " +
+                        "WHERE held.aggregate_id = outbox_events.aggregate_id AND held.first_id < outbox_events.id) " +
+                        "ORDER BY id LIMIT ?",
+                token, now.plusSeconds(leaseSeconds), now, now, now, now, batchSize);
+        if (claimed == 0) return List.of();
+        return jdbcTemplate.query("SELECT id, event_type, aggregate_id, payload, attempts FROM outbox_events " +
+                        "WHERE claim_token = ? ORDER BY id",
+                (rs, i) -> new Claimed(rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getString(4), rs.getInt(5)), token);
+    }
+
+    // runs on a worker, over events in id order
+    private Outcome dispatch(List<Claimed> events) {
+        Map<Long, String> errors = new HashMap<>();
+        Set<Long> released = new HashSet<>();
+        Set<Long> stalledAggregates = new HashSet<>();
+        for (Claimed event : events) {
+            if (stalledAggregates.contains(event.aggregateId())) {
+                released.add(event.id());
+                continue;
+            }
+            try {
+                eventPublisher.publishEvent(objectMapper.readValue(event.payload(), OutboxService.eventClass(event.type())));
+            } catch (Exception e) {
+                log.warn("Outbox event {} ({}) failed on attempt {}: {}", event.id(), event.type(), event.attempts() + 1, e.toString());
+                String error = String.valueOf(e);
+                errors.put(event.id(), error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+                stalledAggregates.add(event.aggregateId());
+            }
+        }
+        return new Outcome(errors, released);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.event.OrderPlacedEvent;
+import com.example.ecommerce.event.OrderStatusChangedEvent;
+import com.example.ecommerce.model.OutboxEvent;
+import com.example.ecommerce.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records domain events in the outbox_events table as part of the caller's transaction. Nothing
+ * runs on the caller's thread beyond the insert: {@link OutboxDispatcher} publishes the events to
+ * {@code @EventListener}s after commit, so adding listeners does not slow checkout down.
+ */
+@Service
+public class OutboxService {
+    // event classes that may be stored, by the type name kept in the table
+    private static final Map<String, Class<?>> EVENT_TYPES = Stream.of(OrderPlacedEvent.class, OrderStatusChangedEvent.class)
+            .collect(Collectors.toUnmodifiableMap(Class::getSimpleName, Function.identity()));
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final OutboxDispatcher dispatcher;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper, OutboxDispatcher dispatcher) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.dispatcher = dispatcher;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(Long aggregateId, Object event) {
+        String type = event.getClass().getSimpleName();
+        if (EVENT_TYPES.get(type) != event.getClass()) {
+            throw new IllegalArgumentException("Unregistered outbox event type " + event.getClass().getName());
+        }
+        OutboxEvent row = new OutboxEvent();
+        row.setEventType(type);
+        row.setAggregateId(aggregateId);
+        try {
+            row.setPayload(objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + type, e);
+        }
+        outboxEventRepository.save(row);
+        // one wake-up per transaction, however many events it appends
+        if (!TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.wakeUp();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OutboxService.this);
+                }
+            });
+        }
+    }
+
+    static Class<?> eventClass(String type) {
+        Class<?> eventClass = EVENT_TYPES.get(type);
+        if (eventClass == null) throw new IllegalArgumentException("Unknown outbox event type " + type);
+        return eventClass;
+    }
+}
@@ -39,6 +39,11 @@ public class PaymentService {
         return razorpayClient.orders.create(orderRequest);
     }
 
+    /** Refunds a captured payment in full. */
+    public void refundPayment(String paymentId) throws RazorpayException {
+        razorpayClient.payments.refund(paymentId);
+    }
+
     public boolean verifyPayment(String orderId, String paymentId, String signature) {
         // Validate input parameters
         if (orderId == null || orderId.isEmpty() || 
@@ -0,0 +1,167 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of products with a time-to-live per entry. Cached instances are detached
+ * and shared between requests, so callers must treat them as read-only; every product write
+ * path goes through {@link ProductService} or {@link InventoryService}, which invalidate the affected
+ * entries after saving.
+ */
+@Component
+public class ProductCache {
+    private final ProductRepository productRepository;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    // access-ordered, guarded by "this"
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // bumped on every invalidation so loads that raced with a write are not cached
+    private long generation;
+    private List<Product> allSnapshot;
+    private long allSnapshotExpiresAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private record Entry(Product product, long expiresAt) {}
+
+    public record Stats(long size, long maxSize, long hits, long misses, long evictions, long expirations,
+                        double hitRate) {}
+
+    public ProductCache(ProductRepository productRepository,
+                        @Value("${app.products.cache.max-size:10000}") int maxSize,
+                        @Value("${app.products.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.productRepository = productRepository;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    }
+
+    public Product get(Long id) {
+        Product cached = lookup(id);
+        if (cached != null) return cached;
+        long gen = currentGeneration();
+        Product loaded = productRepository.findById(id).orElseThrow();
+        store(gen, List.of(loaded));
+        return loaded;
+    }
+
+    /** Resolves several products at once; misses are loaded with a single IN query. */
+    public Map<Long, Product> getAll(Collection<Long> ids) {
+        Map<Long, Product> result = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            Product cached = lookup(id);
+            if (cached != null) result.put(id, cached);
+            else missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            long gen = currentGeneration();
+            List<Product> loaded = productRepository.findAllById(missing);
+            store(gen, loaded);
+            loaded.forEach(p -> result.put(p.getId(), p));
+        }
+        return result;
+    }
+
+    /**
+     * Whole-catalog snapshot for the legacy unpaginated listing. Only kept while the catalog fits
+     * within the cache bound; larger catalogs always read through.
+     */
+    public List<Product> getAllProducts() {
+        long now = System.nanoTime();
+        long gen;
+        synchronized (this) {
+            if (allSnapshot != null && now - allSnapshotExpiresAt < 0) {
+                hits.increment();
+                return allSnapshot;
+            }
+            gen = generation;
+        }
+        misses.increment();
+        List<Product> loaded = productRepository.findAll();
+        if (loaded.size() <= maxSize) {
+            List<Product> snapshot = List.copyOf(loaded);
+            synchronized (this) {
+                if (gen == generation) {
+                    allSnapshot = snapshot;
+                    allSnapshotExpiresAt = now + ttlNanos;
+                }
+            }
+            store(gen, snapshot);
+        }
+        return loaded;
+    }
+
+    public synchronized void invalidate(Long id) {
+        generation++;
+        entries.remove(id);
+        allSnapshot = null;
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        allSnapshot = null;
+    }
+
+    public Stats stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        long size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(size, maxSize, h, m, evictions.sum(), expirations.sum(),
+                h + m == 0 ? 0.0 : (double) h / (h + m));
+    }
+
+    private Product lookup(Long id) {
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt() < 0) {
+                    hits.increment();
+                    return entry.product();
+                }
+                entries.remove(id);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    private synchronized long currentGeneration() {
+        return generation;
+    }
+
+    private synchronized void store(long gen, Collection<Product> products) {
+        if (gen != generation) return;
+        long expiresAt = System.nanoTime() + ttlNanos;
+        for (Product p : products) {
+            entries.put(p.getId(), new Entry(p, expiresAt));
+        }
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+}
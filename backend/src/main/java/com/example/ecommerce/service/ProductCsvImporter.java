@@ -0,0 +1,189 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ImportReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams products from CSV into the products table. Rows are parsed one at a time, validated,
+ * and written with JDBC batches (rewritten into multi-row INSERTs by the MySQL driver), one
+ * transaction per chunk so a bad chunk never rolls back earlier ones.
+ *
+ * <p>Recognised header columns (case and punctuation insensitive): name, description, price,
+ * image_url (or image), stock (or quantity). name and price are required.
+ */
+@Service
+public class ProductCsvImporter {
+    private static final Logger log = LoggerFactory.getLogger(ProductCsvImporter.class);
+    private static final String INSERT_SQL =
+            "INSERT INTO products (name, description, price, image_url, stock, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int chunkSize;
+
+    public ProductCsvImporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              @Value("${app.products.import.batch-size:1000}") int batchSize,
+                              @Value("${app.products.import.chunk-size:20000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Deletes every product that no cart or order line refers to. Referenced products are kept so
+     * order history stays intact.
+     */
+    public int deleteUnreferencedProducts() {
+        return transactionTemplate.execute(status -> jdbcTemplate.update(
+                "DELETE FROM products WHERE id NOT IN (SELECT product_id FROM order_items) " +
+                        "AND id NOT IN (SELECT product_id FROM cart_items)"));
+    }
+
+    public ImportReport importCsv(Reader source) throws IOException {
+        long started = System.nanoTime();
+        long rowsRead = 0;
+        long imported = 0;
+        List<String> errors = new ArrayList<>();
+        long rejected = 0;
+
+        try (CsvReader csv = new CsvReader(source)) {
+            List<String> header = csv.next();
+            if (header == null) {
+                return new ImportReport(0, 0, 0, List.of(), 0, 0);
+            }
+            Map<String, Integer> columns = mapHeader(header);
+            if (!columns.containsKey("name") || !columns.containsKey("price")) {
+                throw new IllegalArgumentException("CSV header must contain name and price columns");
+            }
+
+            List<Object[]> chunk = new ArrayList<>(Math.min(chunkSize, 100_000));
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                rowsRead++;
+                try {
+                    chunk.add(toRow(record, columns));
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add("line " + csv.recordLine() + ": " + e.getMessage());
+                    }
+                }
+                if (chunk.size() >= chunkSize) {
+                    imported += writeChunk(chunk);
+                    chunk.clear();
+                    logProgress(imported, rejected, started);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                imported += writeChunk(chunk);
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        double rate = elapsedMs == 0 ? imported : imported * 1000.0 / elapsedMs;
+        log.info("Product import finished: {} rows read, {} imported, {} rejected in {} ms ({} rows/s)",
+                rowsRead, imported, rejected, elapsedMs, Math.round(rate));
+        return new ImportReport(rowsRead, imported, rejected, errors, elapsedMs, rate);
+    }
+
+    private int writeChunk(List<Object[]> rows) {
+        return transactionTemplate.execute(status -> {
+            int written = 0;
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<Object[]> batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+                written += batch.size();
+            }
+            return written;
+        });
+    }
+
+    private void logProgress(long imported, long rejected, long started) {
+        long elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        log.info("Product import progress: {} imported, {} rejected, {} rows/s",
+                imported, rejected, imported * 1000 / elapsedMs);
+    }
+
+    private static Map<String, Integer> mapHeader(List<String> header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String key = header.get(i).toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "");
+            switch (key) {
+                case "name", "description", "price", "stock" -> columns.putIfAbsent(key, i);
+                case "imageurl", "image" -> columns.putIfAbsent("imageUrl", i);
+                case "quantity" -> columns.putIfAbsent("stock", i);
+                default -> { }
+            }
+        }
+        return columns;
+    }
+
+    private static Object[] toRow(List<String> record, Map<String, Integer> columns) {
+        String name = field(record, columns, "name");
+        if (name == null) throw new IllegalArgumentException("name is required");
+        if (name.length() > 255) throw new IllegalArgumentException("name longer than 255 characters");
+
+        String description = field(record, columns, "description");
+        if (description != null && description.length() > 2000) {
+            throw new IllegalArgumentException("description longer than 2000 characters");
+        }
+
+        String rawPrice = field(record, columns, "price");
+        if (rawPrice == null) throw new IllegalArgumentException("price is required");
+        BigDecimal price;
+        try {
+            price = new BigDecimal(rawPrice.replace(",", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid price '" + rawPrice + "'");
+        }
+        if (price.signum() < 0) throw new IllegalArgumentException("price must not be negative");
+
+        String imageUrl = field(record, columns, "imageUrl");
+        if (imageUrl != null && imageUrl.length() > 255) {
+            throw new IllegalArgumentException("image url longer than 255 characters");
+        }
+
+        String rawStock = field(record, columns, "stock");
+        int stock = 0;
+        if (rawStock != null) {
+            try {
+                stock = Integer.parseInt(rawStock);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid stock '" + rawStock + "'");
+            }
+            if (stock < 0) throw new IllegalArgumentException("stock must not be negative");
+        }
+
+        // Instants are stored as UTC wall-clock time, matching how Hibernate writes them
+        LocalDateTime createdAt = LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+        return new Object[]{name, description, price, imageUrl, stock, createdAt};
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String column) {
+        Integer idx = columns.get(column);
+        if (idx == null || idx >= record.size()) return null;
+        String value = record.get(idx).trim();
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductSearchHit;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product name and description, ranked with BM25.
+ * Name terms count {@link #NAME_WEIGHT} times so title matches outrank description matches.
+ * Rebuilt from the database once the application is ready and kept current by
+ * {@link ProductService} on every product write; writes that land while a rebuild is
+ * reading the table are replayed onto the rebuilt index before it is swapped in.
+ * Hits carry no stock, which changes with every order; read it from {@link ProductCache}.
+ */
+@Component
+public class ProductSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+    private static final int REBUILD_BATCH = 1000;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "the", "to", "with");
+
+    private final ProductRepository productRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Postings current = new Postings();
+    // Writes made while a rebuild is reading the table, replayed onto its result; null = deleted
+    private Map<Long, Doc> changedDuringRebuild;
+
+    private record Doc(String name, BigDecimal price, String imageUrl, Map<String, Integer> terms, int length) {}
+
+    private static final class Postings {
+        // term -> (product id -> weighted term frequency)
+        final Map<String, Map<Long, Integer>> terms = new HashMap<>();
+        final Map<Long, Doc> docs = new HashMap<>();
+        long totalLength;
+
+        void put(Long productId, Doc doc) {
+            remove(productId);
+            docs.put(productId, doc);
+            doc.terms().forEach((term, tf) -> terms.computeIfAbsent(term, t -> new HashMap<>()).put(productId, tf));
+            totalLength += doc.length();
+        }
+
+        void remove(Long productId) {
+            Doc old = docs.remove(productId);
+            if (old == null) return;
+            totalLength -= old.length();
+            for (String term : old.terms().keySet()) {
+                Map<Long, Integer> posting = terms.get(term);
+                if (posting == null) continue;
+                posting.remove(productId);
+                if (posting.isEmpty()) terms.remove(term);
+            }
+        }
+    }
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Postings rebuilt = new Postings();
+        try {
+            long lastId = 0;
+            List<Product> batch;
+            do {
+                batch = productRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(REBUILD_BATCH));
+                for (Product p : batch) {
+                    rebuilt.put(p.getId(), toDoc(p));
+                    lastId = p.getId();
+                }
+            } while (batch.size() == REBUILD_BATCH);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild.forEach((id, doc) -> {
+                if (doc == null) rebuilt.remove(id);
+                else rebuilt.put(id, doc);
+            });
+            changedDuringRebuild = null;
+            current = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Product product) {
+        Doc doc = toDoc(product);
+        lock.writeLock().lock();
+        try {
+            current.put(product.getId(), doc);
+            if (changedDuringRebuild != null) changedDuringRebuild.put(product.getId(), doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            current.remove(productId);
+            if (changedDuringRebuild != null) changedDuringRebuild.put(productId, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ProductSearchHit> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || limit <= 0) return List.of();
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Doc> docs = current.docs;
+            int n = docs.size();
+            if (n == 0) return List.of();
+            double avgLength = (double) current.totalLength / n;
+            Map<Long, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Long, Integer> posting = current.terms.get(term);
+                if (posting == null) continue;
+                double idf = Math.log(1 + (n - posting.size() + 0.5) / (posting.size() + 0.5));
+                for (Map.Entry<Long, Integer> e : posting.entrySet()) {
+                    int tf = e.getValue();
+                    double norm = K1 * (1 - B + B * docs.get(e.getKey()).length() / avgLength);
+                    scores.merge(e.getKey(), idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                }
+            }
+
+            PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Long, Double> e : scores.entrySet()) {
+                if (top.size() < limit) {
+                    top.add(e);
+                } else if (e.getValue() > top.peek().getValue()) {
+                    top.poll();
+                    top.add(e);
+                }
+            }
+            List<ProductSearchHit> hits = new ArrayList<>(top.size());
+            for (Map.Entry<Long, Double> e : top) {
+                Doc doc = docs.get(e.getKey());
+                hits.add(new ProductSearchHit(e.getKey(), doc.name(), doc.price(), doc.imageUrl(), e.getValue()));
+            }
+            hits.sort(Comparator.comparingDouble(ProductSearchHit::score).reversed()
+                    .thenComparing(ProductSearchHit::id));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return current.docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Doc toDoc(Product p) {
+        Map<String, Integer> terms = new HashMap<>();
+        int length = 0;
+        for (String t : tokenize(p.getName())) {
+            terms.merge(t, NAME_WEIGHT, Integer::sum);
+            length += NAME_WEIGHT;
+        }
+        for (String t : tokenize(p.getDescription())) {
+            terms.merge(t, 1, Integer::sum);
+            length++;
+        }
+        return new Doc(p.getName(), p.getPrice(), p.getImageUrl(), terms, length);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = lower.substring(start, i);
+                if (!STOP_WORDS.contains(token)) tokens.add(token);
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
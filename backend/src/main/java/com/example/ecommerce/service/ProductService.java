@@ -1,35 +1,112 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.dto.CursorPageDTO;
+import com.example.ecommerce.dto.ProductCard;
+import com.example.ecommerce.dto.ProductSearchHit;
+import com.example.ecommerce.dto.ProductSuggestion;
 import com.example.ecommerce.model.Product;
 import com.example.ecommerce.repository.ProductRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Service
 public class ProductService {
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final ProductSearchIndex searchIndex;
+    private final ProductSuggestIndex suggestIndex;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, ProductCache productCache,
+                          ProductSearchIndex searchIndex, ProductSuggestIndex suggestIndex) {
         this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.searchIndex = searchIndex;
+        this.suggestIndex = suggestIndex;
+    }
+
+    public List<Product> findAll() { return productCache.getAllProducts(); }
+    public Product findById(Long id) { return productCache.get(id); }
+
+    public Product create(Product p) {
+        Product saved = productRepository.save(p);
+        productCache.invalidate(saved.getId());
+        searchIndex.index(saved);
+        suggestIndex.index(saved.getId(), saved.getName());
+        return saved;
     }
 
-    public List<Product> findAll() { return productRepository.findAll(); }
-    public Product findById(Long id) { return productRepository.findById(id).orElseThrow(); }
-    public Product create(Product p) { return productRepository.save(p); }
     public Product update(Long id, Product p) {
-        Product existing = findById(id);
+        // Load a managed copy; cached instances are shared and must not be mutated
+        Product existing = productRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
         existing.setName(p.getName());
         existing.setDescription(p.getDescription());
         existing.setPrice(p.getPrice());
         existing.setImageUrl(p.getImageUrl());
         existing.setStock(p.getStock());
-        return productRepository.save(existing);
+        Product saved = productRepository.save(existing);
+        productCache.invalidate(id);
+        searchIndex.index(saved);
+        suggestIndex.index(id, saved.getName());
+        return saved;
+    }
+
+    public void delete(Long id) {
+        productRepository.deleteById(id);
+        productCache.invalidate(id);
+        searchIndex.remove(id);
+        suggestIndex.remove(id);
     }
-    public void delete(Long id) { productRepository.deleteById(id); }
-}
 
+    /** Drops cached products and rebuilds the search indexes after out-of-band bulk writes. */
+    public void reloadIndexes() {
+        productCache.invalidateAll();
+        searchIndex.rebuild();
+        suggestIndex.rebuild();
+    }
 
+    public List<ProductSearchHit> search(String query, int limit) {
+        return searchIndex.search(query, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+    }
 
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit);
+    }
 
+    /**
+     * Keyset-paginated catalog. {@code sort} is "newest" (createdAt desc) or "price" (price asc);
+     * the cursor returned with each page encodes the sort key and id of its last row.
+     */
+    public CursorPageDTO<ProductCard> findPage(String sort, String cursor, int size,
+                                           BigDecimal minPrice, BigDecimal maxPrice, boolean inStock) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String[] key = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+        List<ProductCard> rows;
+        if ("price".equals(sort)) {
+            rows = key == null
+                    ? productRepository.findCheapest(minPrice, maxPrice, inStock, Limit.of(limit + 1))
+                    : productRepository.findCheapestAfter(KeysetCursor.parsePrice(key[0]), KeysetCursor.parseId(key[1]),
+                            minPrice, maxPrice, inStock, Limit.of(limit + 1));
+        } else if (sort == null || "newest".equals(sort)) {
+            rows = key == null
+                    ? productRepository.findNewest(minPrice, maxPrice, inStock, Limit.of(limit + 1))
+                    : productRepository.findNewestBefore(KeysetCursor.parseInstant(key[0]), KeysetCursor.parseId(key[1]),
+                            minPrice, maxPrice, inStock, Limit.of(limit + 1));
+        } else {
+            throw new IllegalArgumentException("Unknown sort: " + sort);
+        }
 
+        if (rows.size() <= limit) {
+            return new CursorPageDTO<>(rows, null);
+        }
+        List<ProductCard> page = rows.subList(0, limit);
+        ProductCard last = page.get(limit - 1);
+        String sortKey = "price".equals(sort) ? last.price().toPlainString() : last.createdAt().toString();
+        return new CursorPageDTO<>(page, KeysetCursor.encode(sortKey, last.id()));
+    }
+}
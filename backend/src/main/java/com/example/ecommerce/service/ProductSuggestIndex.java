@@ -0,0 +1,333 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductNameView;
+import com.example.ecommerce.dto.ProductSalesCount;
+import com.example.ecommerce.dto.ProductSuggestion;
+import com.example.ecommerce.event.OrderPlacedEvent;
+import com.example.ecommerce.repository.OrderItemRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Type-ahead over product names. Every name is indexed under its full normalized form and under
+ * the suffixes starting at each later word, kept in one sorted array. A prefix maps to a
+ * contiguous range of that array, and a segment tree of per-key popularity (units sold) yields
+ * the top-K of any range in O(K log n) without touching the database.
+ *
+ * <p>Deletes and renames tombstone the old keys in place; new names go to a small overlay that is
+ * scanned linearly and folded into a fresh snapshot once it reaches {@link #MAX_OVERLAY}.
+ * Name writes that land while {@link #rebuild()} is reading the table are replayed onto its result.
+ * The ids of the last {@code dedupe-capacity} orders counted are kept, so a redelivered order
+ * event does not add its units twice.
+ */
+@Component
+public class ProductSuggestIndex {
+    public static final int MAX_SUGGESTIONS = 20;
+    private static final int MAX_OVERLAY = 256;
+    private static final int MAX_WORD_KEYS = 5;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int REBUILD_BATCH = 5000;
+
+    private final ProductRepository productRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RecentKeys<Long> countedOrders;
+
+    // all guarded by lock
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Long> sales = new HashMap<>();
+    private final Map<Long, String[]> overlay = new HashMap<>();
+    private Snapshot snapshot = Snapshot.build(List.of(), Map.of());
+    // Writes made while a rebuild is reading the table, replayed onto its result; null = deleted
+    private Map<Long, String> changedDuringRebuild;
+
+    public ProductSuggestIndex(ProductRepository productRepository, OrderItemRepository orderItemRepository,
+                               @Value("${app.suggest.dedupe-capacity:100000}") int dedupeCapacity) {
+        this.productRepository = productRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.countedOrders = new RecentKeys<>(dedupeCapacity);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, String> loadedNames = new HashMap<>();
+        Map<Long, Long> loadedSales = new HashMap<>();
+        try {
+            long lastId = 0;
+            List<ProductNameView> batch;
+            do {
+                batch = productRepository.findNamesAfter(lastId, Limit.of(REBUILD_BATCH));
+                for (ProductNameView p : batch) {
+                    loadedNames.put(p.id(), p.name());
+                    lastId = p.id();
+                }
+            } while (batch.size() == REBUILD_BATCH);
+            for (ProductSalesCount c : orderItemRepository.sumQuantityByProduct()) {
+                loadedSales.put(c.productId(), c.quantity());
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild.forEach((id, name) -> {
+                if (name == null) loadedNames.remove(id);
+                else loadedNames.put(id, name);
+            });
+            changedDuringRebuild = null;
+            names.clear();
+            names.putAll(loadedNames);
+            sales.clear();
+            sales.putAll(loadedSales);
+            overlay.clear();
+            snapshot = Snapshot.build(entries(), sales);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Long productId, String name) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) changedDuringRebuild.put(productId, name);
+            String previous = names.put(productId, name);
+            if (previous != null && previous.equals(name)) return;
+            snapshot.tombstone(productId);
+            overlay.put(productId, keys(name));
+            if (overlay.size() >= MAX_OVERLAY) {
+                overlay.clear();
+                snapshot = Snapshot.build(entries(), sales);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) changedDuringRebuild.put(productId, null);
+            names.remove(productId);
+            overlay.remove(productId);
+            snapshot.tombstone(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        if (!countedOrders.firstSeen(event.orderId())) return;
+        lock.writeLock().lock();
+        try {
+            for (OrderPlacedEvent.Line line : event.lines()) {
+                long total = sales.merge(line.productId(), (long) line.quantity(), Long::sum);
+                snapshot.updateScore(line.productId(), total);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        int k = Math.min(limit, MAX_SUGGESTIONS);
+        if (key.isEmpty() || k <= 0) return List.of();
+
+        lock.readLock().lock();
+        try {
+            List<Long> ids = snapshot.top(key, k);
+            for (Map.Entry<Long, String[]> e : overlay.entrySet()) {
+                if (!ids.contains(e.getKey()) && matches(e.getValue(), key)) ids.add(e.getKey());
+            }
+            Comparator<Long> byPopularity = Comparator.<Long>comparingLong(id -> sales.getOrDefault(id, 0L)).reversed()
+                    .thenComparing(names::get);
+            return ids.stream()
+                    .sorted(byPopularity)
+                    .limit(k)
+                    .map(id -> new ProductSuggestion(id, names.get(id)))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Map.Entry<Long, String[]>> entries() {
+        List<Map.Entry<Long, String[]>> result = new ArrayList<>(names.size());
+        names.forEach((id, name) -> result.add(Map.entry(id, keys(name))));
+        return result;
+    }
+
+    private static boolean matches(String[] keys, String prefix) {
+        for (String k : keys) {
+            if (k.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = false;
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                if (space && sb.length() > 0) sb.append(' ');
+                sb.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String[] keys(String name) {
+        String normalized = normalize(name);
+        List<String> keys = new ArrayList<>();
+        int start = 0;
+        while (start >= 0 && keys.size() < MAX_WORD_KEYS) {
+            String key = normalized.substring(start);
+            if (!key.isEmpty()) keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+            int space = normalized.indexOf(' ', start);
+            start = space < 0 ? -1 : space + 1;
+        }
+        return keys.toArray(String[]::new);
+    }
+
+    /** Sorted keys plus an iterative argmax segment tree over their scores. */
+    private static final class Snapshot {
+        private final String[] keys;
+        private final long[] ids;
+        private final long[] scores;
+        private final int[] tree;
+        private final Map<Long, int[]> positions;
+
+        private Snapshot(String[] keys, long[] ids, long[] scores, Map<Long, int[]> positions) {
+            this.keys = keys;
+            this.ids = ids;
+            this.scores = scores;
+            this.positions = positions;
+            int n = keys.length;
+            this.tree = new int[2 * n];
+            for (int i = 0; i < n; i++) tree[n + i] = i;
+            for (int i = n - 1; i > 0; i--) tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+        }
+
+        static Snapshot build(List<Map.Entry<Long, String[]>> entries, Map<Long, Long> sales) {
+            List<Object[]> rows = new ArrayList<>();
+            for (Map.Entry<Long, String[]> e : entries) {
+                for (String key : e.getValue()) rows.add(new Object[]{key, e.getKey()});
+            }
+            rows.sort(Comparator.comparing((Object[] r) -> (String) r[0]).thenComparing(r -> (Long) r[1]));
+            int n = rows.size();
+            String[] keys = new String[n];
+            long[] ids = new long[n];
+            long[] scores = new long[n];
+            Map<Long, List<Integer>> byId = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                keys[i] = (String) rows.get(i)[0];
+                ids[i] = (Long) rows.get(i)[1];
+                scores[i] = sales.getOrDefault(ids[i], 0L);
+                byId.computeIfAbsent(ids[i], id -> new ArrayList<>()).add(i);
+            }
+            Map<Long, int[]> positions = new HashMap<>();
+            byId.forEach((id, list) -> positions.put(id, list.stream().mapToInt(Integer::intValue).toArray()));
+            return new Snapshot(keys, ids, scores, positions);
+        }
+
+        void tombstone(Long id) {
+            int[] pos = positions.remove(id);
+            if (pos == null) return;
+            for (int p : pos) set(p, -1);
+        }
+
+        void updateScore(Long id, long score) {
+            int[] pos = positions.get(id);
+            if (pos == null) return;
+            for (int p : pos) set(p, score);
+        }
+
+        List<Long> top(String prefix, int k) {
+            int lo = lowerBound(prefix);
+            int hi = lowerBound(prefix + Character.MAX_VALUE);
+            List<Long> result = new ArrayList<>(k);
+            if (lo >= hi) return result;
+            Set<Long> seen = new HashSet<>();
+            // max-heap of sub-ranges keyed by the score of their best element
+            PriorityQueue<int[]> ranges = new PriorityQueue<>(
+                    Comparator.<int[]>comparingLong(r -> -scores[r[2]]).thenComparingInt(r -> r[2]));
+            ranges.add(new int[]{lo, hi, argmax(lo, hi)});
+            while (!ranges.isEmpty() && result.size() < k) {
+                int[] r = ranges.poll();
+                int best = r[2];
+                if (scores[best] < 0) break;
+                if (seen.add(ids[best])) result.add(ids[best]);
+                if (r[0] < best) ranges.add(new int[]{r[0], best, argmax(r[0], best)});
+                if (best + 1 < r[1]) ranges.add(new int[]{best + 1, r[1], argmax(best + 1, r[1])});
+            }
+            return result;
+        }
+
+        private int lowerBound(String key) {
+            int idx = Arrays.binarySearch(keys, key);
+            if (idx >= 0) {
+                while (idx > 0 && keys[idx - 1].equals(key)) idx--;
+                return idx;
+            }
+            return -idx - 1;
+        }
+
+        private void set(int pos, long score) {
+            scores[pos] = score;
+            int n = keys.length;
+            for (int i = (pos + n) >> 1; i > 0; i >>= 1) tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+        }
+
+        private int argmax(int l, int r) {
+            int n = keys.length;
+            int best = -1;
+            for (l += n, r += n; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) best = better(best, tree[l++]);
+                if ((r & 1) == 1) best = better(best, tree[--r]);
+            }
+            return best;
+        }
+
+        private int better(int a, int b) {
+            if (a < 0) return b;
+            if (b < 0) return a;
+            if (scores[a] != scores[b]) return scores[a] > scores[b] ? a : b;
+            return Math.min(a, b);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.ecommerce.service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The last {@code capacity} distinct keys seen, the oldest forgotten first. Outbox events are
+ * delivered at least once, and an event is delivered again to every listener when any one of
+ * them fails, so listeners that count keep the keys of the events they have applied here and
+ * skip repeats.
+ */
+final class RecentKeys<K> {
+    private final Object[] ring;
+    private final Set<K> keys;
+    private int next;
+    private int size;
+
+    RecentKeys(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        ring = new Object[capacity];
+        keys = new HashSet<>(capacity * 2);
+    }
+
+    /** Remembers the key; returns false if it was already remembered. */
+    @SuppressWarnings("unchecked")
+    synchronized boolean firstSeen(K key) {
+        if (!keys.add(key)) return false;
+        if (size == ring.length) {
+            keys.remove((K) ring[next]);
+        } else {
+            size++;
+        }
+        ring[next] = key;
+        next = (next + 1) % ring.length;
+        return true;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductNameView;
+import com.example.ecommerce.dto.ProductSalesReport;
+import com.example.ecommerce.dto.SalesReport;
+import com.example.ecommerce.repository.ProductRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static com.example.ecommerce.service.UtcDateTimes.utc;
+
+/**
+ * Sales reports read from the rollups kept by {@link SalesRollupService}, never from orders.
+ * Days and months in the rollup zone come from sales_rollup_daily; in any other zone they are
+ * summed from sales_rollup_hourly, which works as long as the zone's offsets over the range are
+ * whole hours, so that its days start on UTC hours.
+ */
+@Service
+public class SalesReportService {
+    static final int MAX_DAYS = 3660;
+    static final int MAX_HOURLY_DAYS = 92;
+    static final int MAX_PRODUCTS = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final SalesRollupService salesRollupService;
+
+    public enum Granularity { HOUR, DAY, MONTH }
+
+    private static final class Totals {
+        long orders;
+        long units;
+        BigDecimal revenue = BigDecimal.ZERO;
+
+        void add(long orders, long units, BigDecimal revenue) {
+            this.orders += orders;
+            this.units += units;
+            this.revenue = this.revenue.add(revenue);
+        }
+    }
+
+    private record Key(LocalDateTime start, String paymentMethod) {}
+
+    private interface RowAdder {
+        void add(LocalDateTime bucket, String paymentMethod, long orders, long units, BigDecimal revenue);
+    }
+
+    public SalesReportService(JdbcTemplate jdbcTemplate, ProductRepository productRepository,
+                              SalesRollupService salesRollupService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productRepository = productRepository;
+        this.salesRollupService = salesRollupService;
+    }
+
+    /** Sales of all products, or of {@code productId}, per hour, day or month. */
+    public SalesReport sales(LocalDate from, LocalDate to, String zoneId, String granularity, String paymentMethod,
+                             Long productId, boolean byPaymentMethod) {
+        ZoneId zone = zone(zoneId);
+        Granularity unit = granularity(granularity);
+        checkRange(from, to, unit == Granularity.HOUR ? MAX_HOURLY_DAYS : MAX_DAYS);
+        Instant start = from.atStartOfDay(zone).toInstant();
+        Instant end = to.atStartOfDay(zone).toInstant();
+        long product = productId == null ? SalesRollupService.ALL_PRODUCTS : productId;
+
+        Map<Key, Totals> points = new TreeMap<>(Comparator.comparing(Key::start)
+                .thenComparing(Key::paymentMethod, Comparator.nullsFirst(Comparator.naturalOrder())));
+        RowAdder add = (bucket, method, orders, units, revenue) -> {
+            LocalDateTime pointStart = unit == Granularity.MONTH ? bucket.withDayOfMonth(1) : bucket;
+            points.computeIfAbsent(new Key(pointStart, byPaymentMethod ? method : null), k -> new Totals())
+                    .add(orders, units, revenue);
+        };
+
+        String source;
+        if (unit == Granularity.HOUR) {
+            source = SalesRollupService.HOURLY_TABLE;
+            // hours that start within the range, labelled in the report's zone
+            query("SELECT bucket_start, payment_method, orders, units, revenue FROM " + source +
+                            " WHERE product_id = ? AND bucket_start >= ? AND bucket_start < ?", paymentMethod,
+                    rs -> add.add(LocalDateTime.ofInstant(rs.getObject(1, LocalDateTime.class).toInstant(ZoneOffset.UTC), zone),
+                            rs.getString(2), rs.getLong(3), rs.getLong(4), rs.getBigDecimal(5)),
+                    product, utc(start), utc(end));
+        } else {
+            source = daySource(zone, start, end);
+            if (source.equals(SalesRollupService.DAILY_TABLE)) {
+                query("SELECT sales_date, payment_method, orders, units, revenue FROM " + source +
+                                " WHERE product_id = ? AND sales_date >= ? AND sales_date < ?", paymentMethod,
+                        rs -> add.add(rs.getObject(1, LocalDate.class).atStartOfDay(), rs.getString(2), rs.getLong(3),
+                                rs.getLong(4), rs.getBigDecimal(5)),
+                        product, from, to);
+            } else {
+                for (ZoneOffsetRanges.Range range : ZoneOffsetRanges.split(zone, start, end)) {
+                    query("SELECT CAST(TIMESTAMPADD(SECOND, ?, bucket_start) AS DATE) AS sales_date, payment_method, " +
+                                    "SUM(orders), SUM(units), SUM(revenue) FROM " + source +
+                                    " WHERE product_id = ? AND bucket_start >= ? AND bucket_start < ?", paymentMethod,
+                            " GROUP BY sales_date, payment_method",
+                            rs -> add.add(rs.getObject(1, LocalDate.class).atStartOfDay(), rs.getString(2), rs.getLong(3),
+                                    rs.getLong(4), rs.getBigDecimal(5)),
+                            range.offsetSeconds(), product, utc(range.from()), utc(range.to()));
+                }
+            }
+        }
+
+        List<SalesReport.Point> result = new ArrayList<>(points.size());
+        points.forEach((key, totals) -> result.add(new SalesReport.Point(key.start(), key.paymentMethod(), totals.orders,
+                totals.units, totals.revenue)));
+        return new SalesReport(zone.getId(), from, to, unit.name(), source, paymentMethod, productId, result);
+    }
+
+    /** The products with the most revenue over the range, best first. */
+    public ProductSalesReport productSales(LocalDate from, LocalDate to, String zoneId, String paymentMethod, int limit) {
+        ZoneId zone = zone(zoneId);
+        checkRange(from, to, MAX_DAYS);
+        if (limit < 1 || limit > MAX_PRODUCTS) throw new IllegalArgumentException("limit must be between 1 and " + MAX_PRODUCTS);
+        Instant start = from.atStartOfDay(zone).toInstant();
+        Instant end = to.atStartOfDay(zone).toInstant();
+        String source = daySource(zone, start, end);
+        String bucketColumn = source.equals(SalesRollupService.DAILY_TABLE) ? "sales_date" : "bucket_start";
+        Object[] bounds = source.equals(SalesRollupService.DAILY_TABLE)
+                ? new Object[]{from, to} : new Object[]{utc(start), utc(end)};
+
+        List<ProductSalesReport.Line> lines = new ArrayList<>(limit);
+        query("SELECT product_id, SUM(orders), SUM(units), SUM(revenue) AS total FROM " + source +
+                        " WHERE product_id > 0 AND " + bucketColumn + " >= ? AND " + bucketColumn + " < ?", paymentMethod,
+                " GROUP BY product_id ORDER BY total DESC, product_id LIMIT " + limit,
+                rs -> lines.add(new ProductSalesReport.Line(rs.getLong(1), null, rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4))),
+                bounds);
+
+        Map<Long, String> names = productRepository.findNamesByIds(lines.stream().map(ProductSalesReport.Line::productId).toList())
+                .stream().collect(Collectors.toMap(ProductNameView::id, ProductNameView::name));
+        List<ProductSalesReport.Line> named = lines.stream()
+                .map(l -> new ProductSalesReport.Line(l.productId(), names.get(l.productId()), l.orders(), l.units(), l.revenue()))
+                .toList();
+        return new ProductSalesReport(zone.getId(), from, to, source, paymentMethod, named);
+    }
+
+    private void query(String sql, String paymentMethod, RowCallbackHandler handler, Object... args) {
+        query(sql, paymentMethod, "", handler, args);
+    }
+
+    // appends the payment method filter, when there is one, before the tail (GROUP BY and so on)
+    private void query(String sql, String paymentMethod, String tail, RowCallbackHandler handler,
+                       Object... args) {
+        if (paymentMethod == null) {
+            jdbcTemplate.query(sql + tail, handler, args);
+            return;
+        }
+        Object[] withMethod = Arrays.copyOf(args, args.length + 1);
+        withMethod[args.length] = paymentMethod;
+        jdbcTemplate.query(sql + " AND payment_method = ?" + tail, handler, withMethod);
+    }
+
+    // the daily table when it is kept in this zone, otherwise the hourly one
+    private String daySource(ZoneId zone, Instant start, Instant end) {
+        if (zone.equals(salesRollupService.zone())) return SalesRollupService.DAILY_TABLE;
+        for (ZoneOffsetRanges.Range range : ZoneOffsetRanges.split(zone, start, end)) {
+            if (range.offsetSeconds() % 3600 != 0) {
+                throw new IllegalArgumentException("Days in " + zone + " do not start on whole UTC hours; report them in "
+                        + salesRollupService.zone() + " or use granularity=hour");
+            }
+        }
+        return SalesRollupService.HOURLY_TABLE;
+    }
+
+    private ZoneId zone(String zoneId) {
+        if (zoneId == null || zoneId.isBlank()) return salesRollupService.zone();
+        try {
+            return ZoneId.of(zoneId);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Unknown time zone " + zoneId);
+        }
+    }
+
+    private static Granularity granularity(String value) {
+        try {
+            return Granularity.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("granularity must be hour, day or month");
+        }
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to, int maxDays) {
+        if (!from.isBefore(to)) throw new IllegalArgumentException("from must be before to");
+        if (ChronoUnit.DAYS.between(from, to) > maxDays) {
+            throw new IllegalArgumentException("At most " + maxDays + " days per report at this granularity");
+        }
+    }
+}
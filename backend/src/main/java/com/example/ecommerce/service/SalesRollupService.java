@@ -0,0 +1,292 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.event.OrderPlacedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.example.ecommerce.service.UtcDateTimes.utc;
+
+/**
+ * Keeps the sales rollups: sales_rollup_hourly, by UTC hour, and sales_rollup_daily, by date in
+ * {@code app.rollup.zone}. Both hold one row per payment method for all products (product_id 0)
+ * and one per payment method and product. Rows are added to as OrderPlacedEvents are dispatched
+ * from the outbox, and rebuilt from orders by the backfill job, one day per transaction.
+ *
+ * <p>Outbox delivery is at least once, so an order is recorded in sales_rollup_orders, once per
+ * grain, when it is counted, and is never counted again while it is there. The backfill records
+ * every order it counts and counts only orders it recorded, so an event dispatched after its day
+ * was rebuilt adds nothing. Events and backfill days exclude each other through a read-write
+ * lock, which assumes a single application instance, as the dashboard counters do.
+ *
+ * <p>The tables are mapped by {@link com.example.ecommerce.model.SalesRollupHourly},
+ * {@link com.example.ecommerce.model.SalesRollupDaily}, {@link com.example.ecommerce.model.SalesRollupOrder}
+ * and {@link com.example.ecommerce.model.SalesRollupState}.
+ */
+@Service
+public class SalesRollupService {
+    private static final Logger log = LoggerFactory.getLogger(SalesRollupService.class);
+    static final String HOURLY_TABLE = "sales_rollup_hourly";
+    static final String DAILY_TABLE = "sales_rollup_daily";
+    static final long ALL_PRODUCTS = 0;
+    // grains of sales_rollup_orders
+    static final String HOURLY = "H";
+    static final String DAILY = "D";
+    private static final String UNKNOWN_METHOD = "UNKNOWN";
+    private static final String STATE_NAME = "sales";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zone;
+    private final boolean backfillOnStartup;
+    private final long dedupeRetentionHours;
+
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sales-rollup-backfill");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile BackfillStatus backfill;
+
+    public record BackfillStatus(boolean running, LocalDate from, LocalDate to, int days, int daysDone,
+                                 Instant startedAt, Instant finishedAt, String error) {}
+
+    public SalesRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              @Value("${app.rollup.zone:}") String zone,
+                              @Value("${app.rollup.backfill-on-startup:true}") boolean backfillOnStartup,
+                              @Value("${app.rollup.dedupe-retention-hours:168}") long dedupeRetentionHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.zone = zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        this.backfillOnStartup = backfillOnStartup;
+        this.dedupeRetentionHours = dedupeRetentionHours;
+    }
+
+    @PreDestroy
+    void stop() {
+        backfillExecutor.shutdownNow();
+    }
+
+    /**
+     * Rebuilds everything when the rollups have never been filled, or were filled for another zone.
+     * Runs before other startup listeners, so those that read the rollups see the backfill running.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void backfillIfNeeded() {
+        if (!backfillOnStartup) return;
+        List<String> zones = jdbcTemplate.queryForList("SELECT zone FROM sales_rollup_state WHERE name = ?", String.class, STATE_NAME);
+        if (zones.isEmpty() || !zone.getId().equals(zones.get(0))) {
+            log.info("Sales rollups are not built for zone {}, backfilling", zone);
+            startBackfill(null, null);
+        }
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    @EventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        if (event.createdAt() == null) return;
+        rebuildLock.readLock().lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = utc(Instant.now());
+                if (markCounted(event.orderId(), HOURLY, now)) {
+                    add(HOURLY_TABLE, "bucket_start", utc(event.createdAt().truncatedTo(ChronoUnit.HOURS)), event);
+                }
+                if (markCounted(event.orderId(), DAILY, now)) {
+                    add(DAILY_TABLE, "sales_date", LocalDate.ofInstant(event.createdAt(), zone), event);
+                }
+            });
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    private boolean markCounted(Long orderId, String grain, LocalDateTime now) {
+        return jdbcTemplate.update("INSERT IGNORE INTO sales_rollup_orders (order_id, grain, applied_at) VALUES (?, ?, ?)",
+                orderId, grain, now) == 1;
+    }
+
+    private void add(String table, String bucketColumn, Object bucket, OrderPlacedEvent event) {
+        String method = event.paymentMethod() == null ? UNKNOWN_METHOD : event.paymentMethod();
+        // rows in key order, so two orders never wait on each other's rows the other way round
+        Map<Long, Object[]> rows = new TreeMap<>();
+        long units = 0;
+        for (OrderPlacedEvent.Line line : event.lines()) {
+            if (line.productId() == null) continue;
+            BigDecimal revenue = line.unitPrice().multiply(BigDecimal.valueOf(line.quantity()));
+            Object[] row = rows.get(line.productId());
+            if (row == null) {
+                rows.put(line.productId(), new Object[]{line.productId(), bucket, method, 1, (long) line.quantity(), revenue});
+            } else {
+                row[4] = (long) row[4] + line.quantity();
+                row[5] = ((BigDecimal) row[5]).add(revenue);
+            }
+            units += line.quantity();
+        }
+        List<Object[]> args = new ArrayList<>(rows.size() + 1);
+        args.add(new Object[]{ALL_PRODUCTS, bucket, method, 1, units, event.totalAmount()});
+        args.addAll(rows.values());
+        jdbcTemplate.batchUpdate("INSERT INTO " + table + " (product_id, " + bucketColumn + ", payment_method, orders, units, revenue) " +
+                "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE orders = orders + VALUES(orders), " +
+                "units = units + VALUES(units), revenue = revenue + VALUES(revenue)", args);
+    }
+
+    /**
+     * Rebuilds the rollups of the dates [from, to) in the rollup zone, in the background. Without
+     * dates it rebuilds everything from the first order to today, and records the zone.
+     */
+    public synchronized BackfillStatus startBackfill(LocalDate from, LocalDate to) {
+        if (backfill != null && backfill.running()) throw new IllegalStateException("A sales rollup backfill is already running");
+        boolean full = from == null && to == null;
+        if (full) {
+            LocalDateTime first = jdbcTemplate.queryForObject("SELECT MIN(created_at) FROM orders", LocalDateTime.class);
+            to = LocalDate.now(zone).plusDays(1);
+            from = first == null ? to.minusDays(1) : LocalDate.ofInstant(first.toInstant(ZoneOffset.UTC), zone);
+        } else if (from == null || to == null) {
+            throw new IllegalArgumentException("from and to are both required, or both left out");
+        } else if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        LocalDate first = from;
+        LocalDate end = to;
+        backfill = new BackfillStatus(true, first, end, (int) ChronoUnit.DAYS.between(first, end), 0, Instant.now(), null, null);
+        backfillExecutor.execute(() -> runBackfill(first, end, full));
+        return backfill;
+    }
+
+    public BackfillStatus backfillStatus() {
+        return backfill;
+    }
+
+    private void runBackfill(LocalDate from, LocalDate to, boolean full) {
+        BackfillStatus status = backfill;
+        long started = System.nanoTime();
+        try {
+            if (full) {
+                // rows outside the rebuilt range would be left from another zone
+                Instant start = from.atStartOfDay(zone).toInstant();
+                Instant end = to.atStartOfDay(zone).toInstant();
+                exclusively(() -> {
+                    jdbcTemplate.update("DELETE FROM " + DAILY_TABLE + " WHERE sales_date < ? OR sales_date >= ?", from, to);
+                    jdbcTemplate.update("DELETE FROM " + HOURLY_TABLE + " WHERE bucket_start < ? OR bucket_start >= ?",
+                            utc(floorHour(start)), utc(ceilHour(end)));
+                });
+            }
+            for (LocalDate date = from; date.isBefore(to); date = date.plusDays(1)) {
+                rebuildDay(date, date.plusDays(1).equals(to));
+                backfill = status = new BackfillStatus(true, from, to, status.days(), status.daysDone() + 1,
+                        status.startedAt(), null, null);
+            }
+            if (full) {
+                LocalDateTime now = utc(Instant.now());
+                if (jdbcTemplate.update("UPDATE sales_rollup_state SET zone = ?, backfilled_at = ? WHERE name = ?",
+                        zone.getId(), now, STATE_NAME) == 0) {
+                    jdbcTemplate.update("INSERT INTO sales_rollup_state (name, zone, backfilled_at) VALUES (?, ?, ?)",
+                            STATE_NAME, zone.getId(), now);
+                }
+            }
+            backfill = new BackfillStatus(false, from, to, status.days(), status.daysDone(), status.startedAt(), Instant.now(), null);
+            log.info("Sales rollups for {} days rebuilt in {} ms", status.days(), (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Sales rollup backfill failed", e);
+            backfill = new BackfillStatus(false, from, to, status.days(), status.daysDone(), status.startedAt(), Instant.now(),
+                    String.valueOf(e));
+        }
+    }
+
+    /**
+     * Rebuilds one date of the daily table and the hours starting in it (plus, on the last date,
+     * the hour the range ends in) from the orders created then.
+     */
+    private void rebuildDay(LocalDate date, boolean last) {
+        Instant dayStart = date.atStartOfDay(zone).toInstant();
+        Instant dayEnd = date.plusDays(1).atStartOfDay(zone).toInstant();
+        LocalDateTime hoursFrom = utc(floorHour(dayStart));
+        LocalDateTime hoursTo = utc(last ? ceilHour(dayEnd) : floorHour(dayEnd));
+        exclusively(() -> {
+            LocalDateTime now = utc(Instant.now());
+            jdbcTemplate.update("DELETE FROM " + HOURLY_TABLE + " WHERE bucket_start >= ? AND bucket_start < ?", hoursFrom, hoursTo);
+            count(HOURLY_TABLE, HOURLY, "bucket_start", "TIMESTAMPADD(HOUR, TIMESTAMPDIFF(HOUR, CAST(? AS DATETIME), o.created_at), CAST(? AS DATETIME))",
+                    List.of(hoursFrom, hoursFrom), hoursFrom, hoursTo, now);
+            jdbcTemplate.update("DELETE FROM " + DAILY_TABLE + " WHERE sales_date = ?", date);
+            count(DAILY_TABLE, DAILY, "sales_date", "CAST(? AS DATE)", List.of(date), utc(dayStart), utc(dayEnd), now);
+        });
+    }
+
+    // bucket is the SQL for an order's bucket, with bucketArgs for its placeholders
+    private void count(String table, String grain, String bucketColumn, String bucket, List<Object> bucketArgs,
+                       LocalDateTime from, LocalDateTime to, LocalDateTime now) {
+        // only orders recorded here are counted: one committed after this statement is left to its event
+        jdbcTemplate.update("INSERT IGNORE INTO sales_rollup_orders (order_id, grain, applied_at) " +
+                "SELECT id, ?, ? FROM orders WHERE created_at >= ? AND created_at < ?", grain, now, from, to);
+
+        String counted = "FROM orders o JOIN sales_rollup_orders r ON r.order_id = o.id AND r.grain = ? ";
+        String range = "WHERE o.created_at >= ? AND o.created_at < ? ";
+        List<Object> args = new ArrayList<>(bucketArgs);
+        args.addAll(List.of(grain, from, to));
+        jdbcTemplate.update("INSERT INTO " + table + " (product_id, " + bucketColumn + ", payment_method, orders, units, revenue) " +
+                "SELECT 0, " + bucket + " AS bucket, COALESCE(o.payment_method, '" + UNKNOWN_METHOD + "') AS method, COUNT(*), " +
+                "COALESCE(SUM((SELECT SUM(i.quantity) FROM order_items i WHERE i.order_id = o.id)), 0), SUM(o.total_amount) " +
+                counted + range + "GROUP BY bucket, method", args.toArray());
+        jdbcTemplate.update("INSERT INTO " + table + " (product_id, " + bucketColumn + ", payment_method, orders, units, revenue) " +
+                "SELECT i.product_id, " + bucket + " AS bucket, COALESCE(o.payment_method, '" + UNKNOWN_METHOD + "') AS method, " +
+                "COUNT(DISTINCT o.id), SUM(i.quantity), SUM(i.price_at_purchase * i.quantity) " +
+                counted + "JOIN order_items i ON i.order_id = o.id " + range + "AND i.product_id IS NOT NULL " +
+                "GROUP BY i.product_id, bucket, method", args.toArray());
+    }
+
+    private void exclusively(Runnable work) {
+        rebuildLock.writeLock().lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> work.run());
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rollup.purge-interval-ms:3600000}")
+    public void purgeCounted() {
+        int deleted = jdbcTemplate.update("DELETE FROM sales_rollup_orders WHERE applied_at < ?",
+                utc(Instant.now().minusSeconds(dedupeRetentionHours * 3600)));
+        if (deleted > 0) log.info("Purged {} counted-order records of the sales rollups", deleted);
+    }
+
+    private static Instant floorHour(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static Instant ceilHour(Instant instant) {
+        Instant floor = floorHour(instant);
+        return floor.equals(instant) ? floor : floor.plus(1, ChronoUnit.HOURS);
+    }
+}
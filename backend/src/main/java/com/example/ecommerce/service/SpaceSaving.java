@@ -0,0 +1,126 @@
+package com.example.ecommerce.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Weighted Space-Saving summary of at most {@code capacity} counters. A key that is not tracked
+ * takes over the smallest counter, inheriting its count as error, so each count overestimates the
+ * key's true weight by at most its error, and a key that is not tracked has at most the smallest
+ * count ({@link #floor()}); fed directly, neither exceeds total / capacity. Summaries are merged
+ * by adding counters, a key missing from a full summary being taken at that summary's floor, which
+ * keeps both guarantees for the combined stream. Not thread-safe.
+ */
+final class SpaceSaving {
+
+    static final class Counter {
+        final long key;
+        long count;
+        long error;
+
+        Counter(long key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_COUNT = Comparator.<Counter>comparingLong(c -> c.count)
+            .thenComparingLong(c -> c.key);
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+    private long total;
+
+    SpaceSaving(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /** Sum of all weights offered, tracked or not. */
+    long total() {
+        return total;
+    }
+
+    void offer(long key, long weight) {
+        if (weight <= 0) return;
+        total += weight;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += weight;
+            byCount.add(counter);
+        } else if (counters.size() < capacity) {
+            add(new Counter(key, weight, 0));
+        } else {
+            Counter smallest = byCount.pollFirst();
+            counters.remove(smallest.key);
+            add(new Counter(key, smallest.count + weight, smallest.count));
+        }
+    }
+
+    /** Adds {@code other} into this summary. */
+    void merge(SpaceSaving other) {
+        if (other.counters.isEmpty()) return;
+        long missingHere = floor();
+        long missingThere = other.floor();
+        Map<Long, Counter> merged = new HashMap<>(counters.size() + other.counters.size());
+        for (Counter c : counters.values()) {
+            Counter theirs = other.counters.get(c.key);
+            merged.put(c.key, theirs == null
+                    ? new Counter(c.key, c.count + missingThere, c.error + missingThere)
+                    : new Counter(c.key, c.count + theirs.count, c.error + theirs.error));
+        }
+        for (Counter c : other.counters.values()) {
+            if (!merged.containsKey(c.key)) merged.put(c.key, new Counter(c.key, c.count + missingHere, c.error + missingHere));
+        }
+        counters.clear();
+        byCount.clear();
+        List<Counter> sorted = new ArrayList<>(merged.values());
+        sorted.sort(BY_COUNT.reversed());
+        sorted.stream().limit(capacity).forEach(this::add);
+        total += other.total;
+    }
+
+    void clear() {
+        counters.clear();
+        byCount.clear();
+        total = 0;
+    }
+
+    /** Counters from the largest count down. */
+    List<Counter> top(int n) {
+        List<Counter> top = new ArrayList<>(Math.min(n, counters.size()));
+        for (Counter c : byCount.descendingSet()) {
+            if (top.size() == n) break;
+            top.add(new Counter(c.key, c.count, c.error));
+        }
+        return top;
+    }
+
+    SpaceSaving copy() {
+        SpaceSaving copy = new SpaceSaving(capacity);
+        counters.values().forEach(c -> copy.add(new Counter(c.key, c.count, c.error)));
+        copy.total = total;
+        return copy;
+    }
+
+    /** Most an untracked key may have had: nothing unless the summary is full. */
+    long floor() {
+        return counters.size() < capacity ? 0 : byCount.first().count;
+    }
+
+    private void add(Counter counter) {
+        counters.put(counter.key, counter);
+        byCount.add(counter);
+    }
+}
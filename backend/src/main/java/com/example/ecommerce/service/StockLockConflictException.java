@@ -0,0 +1,11 @@
+package com.example.ecommerce.service;
+
+/**
+ * Thrown when a transaction that already holds stock locks cannot take another one without
+ * risking a deadlock. The work is retried in a transaction of its own.
+ */
+class StockLockConflictException extends RuntimeException {
+    StockLockConflictException() {
+        super("Stock lock taken out of order");
+    }
+}
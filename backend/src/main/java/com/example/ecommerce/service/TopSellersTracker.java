@@ -0,0 +1,311 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductNameView;
+import com.example.ecommerce.dto.TopSellers;
+import com.example.ecommerce.event.OrderPlacedEvent;
+import com.example.ecommerce.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static com.example.ecommerce.service.UtcDateTimes.utc;
+
+/**
+ * Top-selling products over the last hour, 24 hours and 7 days, in constant memory. Sales are
+ * fed to {@link SpaceSaving} sketches of {@code capacity} counters, one for quantity and one for
+ * revenue per time slot: twelve 5-minute slots for the hour and 168 hourly slots for the day and
+ * the week. A query merges the slots its window covers, so a window ends now and starts at the
+ * beginning of its oldest slot.
+ *
+ * <p>At startup, once any sales rollup backfill has finished, the hourly slots before the current
+ * hour are seeded from sales_rollup_hourly and the rest from the order items since the oldest
+ * 5-minute slot, all read in one snapshot through the streaming export pool. From then on the
+ * sketches follow the OrderPlacedEvents dispatched from the outbox; events arriving during the
+ * seed are held back until it is done. An order from before the current hour is counted only if
+ * the rollups had not counted it yet when they were read; for later orders the ids of the last
+ * {@code dedupe-capacity} are remembered, so an order counted by the seed or redelivered is not
+ * counted twice.
+ */
+@Service
+public class TopSellersTracker {
+    private static final Logger log = LoggerFactory.getLogger(TopSellersTracker.class);
+    static final int MAX_LIMIT = 100;
+
+    private final JdbcTemplate streamingTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final ProductRepository productRepository;
+    private final SalesRollupService salesRollupService;
+    private final int capacity;
+    private final Ring fiveMinutes;
+    private final Ring hours;
+    private final RecentKeys<Long> recentOrders;
+
+    // orders created before the seed's cutoff hour that the rollups had not counted when read
+    private final Set<Long> uncounted = ConcurrentHashMap.newKeySet();
+    // events received before the seed finished; guarded by this, null once seeded
+    private List<OrderPlacedEvent> heldBack = new ArrayList<>();
+    private volatile Instant cutoff;
+    private volatile boolean seeded;
+    private final LongAdder ordersApplied = new LongAdder();
+    private final LongAdder duplicatesSkipped = new LongAdder();
+
+    public record Stats(boolean seeded, int capacity, long ordersApplied, long duplicatesSkipped) {}
+
+    public enum Window {
+        HOUR("1h", 12), DAY("24h", 24), WEEK("7d", 168);
+
+        final String label;
+        final int slots;
+
+        Window(String label, int slots) {
+            this.label = label;
+            this.slots = slots;
+        }
+
+        static Window parse(String label) {
+            for (Window window : values()) {
+                if (window.label.equalsIgnoreCase(label)) return window;
+            }
+            throw new IllegalArgumentException("window must be 1h, 24h or 7d");
+        }
+    }
+
+    private static final class Slot {
+        long index = Long.MIN_VALUE;
+        final SpaceSaving quantity;
+        final SpaceSaving revenue;
+
+        Slot(int capacity) {
+            quantity = new SpaceSaving(capacity);
+            revenue = new SpaceSaving(capacity);
+        }
+    }
+
+    // slots of slotSeconds each, reused round-robin by slot index
+    private static final class Ring {
+        final long slotSeconds;
+        final Slot[] slots;
+
+        Ring(long slotSeconds, int size, int capacity) {
+            this.slotSeconds = slotSeconds;
+            this.slots = new Slot[size];
+            for (int i = 0; i < size; i++) slots[i] = new Slot(capacity);
+        }
+
+        void add(Instant at, long productId, long quantity, long cents) {
+            long index = Math.floorDiv(at.getEpochSecond(), slotSeconds);
+            Slot slot = slots[(int) Math.floorMod(index, (long) slots.length)];
+            synchronized (slot) {
+                if (slot.index != index) {
+                    // the slot has moved on to a later period: this sale is older than the ring
+                    if (index < slot.index) return;
+                    slot.index = index;
+                    slot.quantity.clear();
+                    slot.revenue.clear();
+                }
+                slot.quantity.offer(productId, quantity);
+                slot.revenue.offer(productId, cents);
+            }
+        }
+
+        SpaceSaving merge(long firstIndex, long lastIndex, boolean revenue, int capacity) {
+            SpaceSaving merged = new SpaceSaving(capacity);
+            for (Slot slot : slots) {
+                synchronized (slot) {
+                    if (slot.index >= firstIndex && slot.index <= lastIndex) merged.merge(revenue ? slot.revenue : slot.quantity);
+                }
+            }
+            return merged;
+        }
+    }
+
+    public TopSellersTracker(@Qualifier("exportDataSource") DataSource streamingDataSource,
+                             ProductRepository productRepository, SalesRollupService salesRollupService,
+                             @Value("${app.export.fetch-size:1000}") int fetchSize,
+                             @Value("${app.top-sellers.capacity:256}") int capacity,
+                             @Value("${app.top-sellers.dedupe-capacity:100000}") int dedupeCapacity) {
+        this.streamingTemplate = new JdbcTemplate(streamingDataSource);
+        this.streamingTemplate.setFetchSize(fetchSize);
+        this.snapshotTemplate = new TransactionTemplate(new DataSourceTransactionManager(streamingDataSource));
+        this.snapshotTemplate.setReadOnly(true);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.productRepository = productRepository;
+        this.salesRollupService = salesRollupService;
+        this.capacity = capacity;
+        this.fiveMinutes = new Ring(300, Window.HOUR.slots, capacity);
+        this.hours = new Ring(3600, Window.WEEK.slots, capacity);
+        this.recentOrders = new RecentKeys<>(dedupeCapacity);
+    }
+
+    // after SalesRollupService has decided whether to backfill
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void start() {
+        Thread seeder = new Thread(this::seed, "top-sellers-seed");
+        seeder.setDaemon(true);
+        seeder.start();
+    }
+
+    void seed() {
+        try {
+            while (salesRollupService.backfillStatus() != null && salesRollupService.backfillStatus().running()) {
+                Thread.sleep(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long started = System.nanoTime();
+        Instant now = Instant.now();
+        long currentHour = Math.floorDiv(now.getEpochSecond(), hours.slotSeconds);
+        Instant hourStart = Instant.ofEpochSecond(currentHour * hours.slotSeconds);
+        LocalDateTime since = utc(Instant.ofEpochSecond((currentHour - Window.WEEK.slots + 1) * hours.slotSeconds));
+        long firstFiveMinutes = Math.floorDiv(now.getEpochSecond(), fiveMinutes.slotSeconds) - Window.HOUR.slots + 1;
+        Instant itemsFrom = Instant.ofEpochSecond(Math.min(firstFiveMinutes * fiveMinutes.slotSeconds, hourStart.getEpochSecond()));
+        Instant seedCutoff = hourStart;
+        long[] lastOrder = {Long.MIN_VALUE};
+        boolean[] counting = {false};
+        try {
+            snapshotTemplate.executeWithoutResult(status -> {
+                streamingTemplate.query("SELECT product_id, bucket_start, SUM(units), SUM(revenue) FROM " +
+                                SalesRollupService.HOURLY_TABLE + " WHERE bucket_start >= ? AND bucket_start < ? " +
+                                "AND product_id <> ? GROUP BY product_id, bucket_start",
+                        rs -> {
+                            hours.add(rs.getObject(2, LocalDateTime.class).toInstant(ZoneOffset.UTC), rs.getLong(1),
+                                    rs.getLong(3), cents(rs.getBigDecimal(4)));
+                        }, since, utc(hourStart), SalesRollupService.ALL_PRODUCTS);
+                streamingTemplate.query("SELECT o.id FROM orders o WHERE o.created_at >= ? AND o.created_at < ? " +
+                                "AND NOT EXISTS (SELECT 1 FROM sales_rollup_orders r WHERE r.order_id = o.id AND r.grain = ?)",
+                        rs -> {
+                            uncounted.add(rs.getLong(1));
+                        }, since, utc(hourStart), SalesRollupService.HOURLY);
+                streamingTemplate.query("SELECT o.id, o.created_at, i.product_id, i.quantity, i.price_at_purchase FROM orders o " +
+                                "JOIN order_items i ON i.order_id = o.id WHERE o.created_at >= ? AND i.product_id IS NOT NULL ORDER BY o.id",
+                        rs -> {
+                            long orderId = rs.getLong(1);
+                            Instant at = rs.getObject(2, LocalDateTime.class).toInstant(ZoneOffset.UTC);
+                            if (orderId != lastOrder[0]) {
+                                lastOrder[0] = orderId;
+                                // an uncounted earlier order is left to its event, which adds it to both rings
+                                counting[0] = at.isBefore(hourStart) ? !uncounted.contains(orderId) : recentOrders.firstSeen(orderId);
+                            }
+                            if (!counting[0]) return;
+                            long cents = cents(rs.getBigDecimal(5).multiply(BigDecimal.valueOf(rs.getInt(4))));
+                            fiveMinutes.add(at, rs.getLong(3), rs.getInt(4), cents);
+                            if (!at.isBefore(hourStart)) hours.add(at, rs.getLong(3), rs.getInt(4), cents);
+                        }, utc(itemsFrom));
+            });
+        } catch (RuntimeException e) {
+            log.error("Top sellers could not be seeded; counting new orders only", e);
+            seedCutoff = Instant.MIN;
+        }
+
+        List<OrderPlacedEvent> events;
+        synchronized (this) {
+            cutoff = seedCutoff;
+            seeded = true;
+            events = heldBack;
+            heldBack = null;
+        }
+        events.forEach(this::apply);
+        log.info("Top sellers seeded from rollups since {} and orders since {} in {} ms", since, utc(itemsFrom),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @EventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        synchronized (this) {
+            if (heldBack != null) {
+                heldBack.add(event);
+                return;
+            }
+        }
+        apply(event);
+    }
+
+    private void apply(OrderPlacedEvent event) {
+        Instant at = event.createdAt() == null ? Instant.now() : event.createdAt();
+        boolean first = at.isBefore(cutoff) ? uncounted.remove(event.orderId()) : recentOrders.firstSeen(event.orderId());
+        if (!first) {
+            duplicatesSkipped.increment();
+            return;
+        }
+        for (OrderPlacedEvent.Line line : event.lines()) {
+            if (line.productId() != null) add(at, line.productId(), line.quantity(), line.unitPrice());
+        }
+        ordersApplied.increment();
+    }
+
+    private void add(Instant at, long productId, int quantity, BigDecimal unitPrice) {
+        long cents = unitPrice == null ? 0 : cents(unitPrice.multiply(BigDecimal.valueOf(quantity)));
+        fiveMinutes.add(at, productId, quantity, cents);
+        hours.add(at, productId, quantity, cents);
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /** The {@code limit} best sellers of the window by quantity or revenue. */
+    public TopSellers top(String window, String metric, int limit) {
+        Window w = Window.parse(window);
+        boolean byRevenue = switch (metric.toLowerCase(Locale.ROOT)) {
+            case "quantity" -> false;
+            case "revenue" -> true;
+            default -> throw new IllegalArgumentException("by must be quantity or revenue");
+        };
+        if (limit < 1 || limit > MAX_LIMIT) throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        if (limit > capacity) throw new IllegalArgumentException("limit must not exceed the sketch capacity " + capacity);
+
+        Ring ring = w == Window.HOUR ? fiveMinutes : hours;
+        long lastIndex = Math.floorDiv(Instant.now().getEpochSecond(), ring.slotSeconds);
+        long firstIndex = lastIndex - w.slots + 1;
+        SpaceSaving merged = ring.merge(firstIndex, lastIndex, byRevenue, capacity);
+
+        List<SpaceSaving.Counter> counters = merged.top(limit + 1);
+        // the most any product left out can have sold
+        long unlisted = counters.size() > limit ? counters.remove(limit).count : merged.floor();
+        Map<Long, String> names = productRepository.findNamesByIds(counters.stream().map(c -> c.key).toList()).stream()
+                .collect(Collectors.toMap(ProductNameView::id, ProductNameView::name));
+        List<TopSellers.Item> items = new ArrayList<>(counters.size());
+        for (SpaceSaving.Counter c : counters) {
+            items.add(new TopSellers.Item(c.key, names.get(c.key), amount(c.count, byRevenue), amount(c.count - c.error, byRevenue),
+                    c.count - c.error > unlisted));
+        }
+        return new TopSellers(w.label, byRevenue ? "revenue" : "quantity", Instant.ofEpochSecond(firstIndex * ring.slotSeconds),
+                amount(merged.total(), byRevenue), amount(unlisted, byRevenue), capacity, items);
+    }
+
+    public Stats stats() {
+        return new Stats(seeded, capacity, ordersApplied.sum(), duplicatesSkipped.sum());
+    }
+
+    private static BigDecimal amount(long value, boolean cents) {
+        return cents ? BigDecimal.valueOf(value, 2) : BigDecimal.valueOf(value);
+    }
+}
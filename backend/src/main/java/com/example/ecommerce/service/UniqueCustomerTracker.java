@@ -0,0 +1,317 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.UniqueCustomers;
+import com.example.ecommerce.event.OrderPlacedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.example.ecommerce.service.UtcDateTimes.utc;
+
+/**
+ * Approximate distinct buyers, kept in {@link HyperLogLog} sketches: per day (in
+ * {@code app.rollup.zone}), per product and overall, each for all buyers and, per day and
+ * overall, for returning buyers (those placing an order that is not their first). A range of days
+ * is counted by merging its day sketches, and the repeat-purchase rate is returning buyers over
+ * buyers.
+ *
+ * <p>Sketches are updated from the OrderPlacedEvents dispatched from the outbox; adding a buyer
+ * twice changes nothing, so redelivered events are harmless. They live in an LRU cache of
+ * {@code cache-size} sketches and are written to customer_sketches (mapped by
+ * {@link com.example.ecommerce.model.CustomerSketch}) every
+ * {@code flush-interval-ms}. At startup the orders since the last write (less
+ * {@code replay-margin-minutes}) are added again; everything is rebuilt from orders when there
+ * are no sketches yet, or none for the zone.
+ */
+@Service
+public class UniqueCustomerTracker {
+    private static final Logger log = LoggerFactory.getLogger(UniqueCustomerTracker.class);
+    static final int PRECISION = 14;
+    static final int PRODUCT_PRECISION = 10;
+    static final int MAX_DAYS = 3660;
+    private static final int REPLAY_CHUNK = 2000;
+    private static final String BUYERS = "buyers";
+    private static final String RETURNING = "returning";
+    private static final String PRODUCT_BUYERS = "product_buyers";
+    private static final String ALL = "all";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zone;
+    private final String dayBuyers;
+    private final String dayReturning;
+    private final int cacheSize;
+    private final long replayMarginMinutes;
+
+    // access-ordered; guarded by itself
+    private final LinkedHashMap<SketchId, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile boolean built;
+    private final LongAdder ordersApplied = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private volatile Instant lastFlushedAt;
+
+    private record SketchId(String kind, String key) {}
+
+    private static final class Entry {
+        final HyperLogLog sketch;
+        long version;
+        long flushedVersion;
+
+        Entry(HyperLogLog sketch) {
+            this.sketch = sketch;
+        }
+
+        boolean dirty() {
+            return version != flushedVersion;
+        }
+    }
+
+    private record OrderRow(long id, long userId, Instant createdAt, boolean returning) {}
+
+    public record ProductReach(Long productId, long customers, double standardError) {}
+
+    public record Stats(boolean built, int cachedSketches, int dirtySketches, long ordersApplied, long flushes,
+                        Instant lastFlushedAt) {}
+
+    public UniqueCustomerTracker(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 SalesRollupService salesRollupService,
+                                 @Value("${app.customers.cache-size:4096}") int cacheSize,
+                                 @Value("${app.customers.replay-margin-minutes:60}") long replayMarginMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.zone = salesRollupService.zone();
+        // day sketches are dated in one zone: another zone starts a new set
+        this.dayBuyers = "day_buyers:" + zone.getId();
+        this.dayReturning = "day_returning:" + zone.getId();
+        this.cacheSize = cacheSize;
+        this.replayMarginMinutes = replayMarginMinutes;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread builder = new Thread(this::catchUp, "customer-sketch-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private void catchUp() {
+        long started = System.nanoTime();
+        try {
+            Integer daySketches = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer_sketches WHERE kind = ?",
+                    Integer.class, dayBuyers);
+            LocalDateTime lastWrite = jdbcTemplate.queryForObject("SELECT MAX(updated_at) FROM customer_sketches", LocalDateTime.class);
+            Instant since = daySketches == 0 || lastWrite == null ? null
+                    : lastWrite.toInstant(ZoneOffset.UTC).minus(replayMarginMinutes, ChronoUnit.MINUTES);
+            long orders = replay(since);
+            built = true;
+            flush();
+            log.info("Customer sketches caught up with {} orders {} in {} ms", orders,
+                    since == null ? "(full rebuild)" : "since " + since, (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Customer sketches could not catch up with orders", e);
+        }
+    }
+
+    // adds the orders created since the given time (all orders when null), oldest first
+    private long replay(Instant since) {
+        LocalDateTime lastCreatedAt = since == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : utc(since);
+        long lastId = Long.MIN_VALUE;
+        long count = 0;
+        while (true) {
+            List<OrderRow> orders = jdbcTemplate.query("SELECT o.id, o.user_id, o.created_at, " +
+                            "EXISTS (SELECT 1 FROM orders p WHERE p.user_id = o.user_id " +
+                            "AND (p.created_at < o.created_at OR (p.created_at = o.created_at AND p.id < o.id))) " +
+                            "FROM orders o WHERE o.user_id IS NOT NULL AND (o.created_at > ? OR (o.created_at = ? AND o.id > ?)) " +
+                            "ORDER BY o.created_at, o.id LIMIT " + REPLAY_CHUNK,
+                    (rs, i) -> new OrderRow(rs.getLong(1), rs.getLong(2),
+                            rs.getObject(3, LocalDateTime.class).toInstant(ZoneOffset.UTC), rs.getBoolean(4)),
+                    lastCreatedAt, lastCreatedAt, lastId);
+            if (orders.isEmpty()) return count;
+
+            Map<Long, List<Long>> products = new HashMap<>();
+            jdbcTemplate.query("SELECT order_id, product_id FROM order_items WHERE product_id IS NOT NULL AND order_id IN (" +
+                            String.join(",", Collections.nCopies(orders.size(), "?")) + ")",
+                    rs -> {
+                        products.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2));
+                    },
+                    orders.stream().map(OrderRow::id).toArray());
+            for (OrderRow order : orders) {
+                record(order.userId(), order.createdAt(), products.getOrDefault(order.id(), List.of()), order.returning());
+            }
+            count += orders.size();
+            OrderRow last = orders.get(orders.size() - 1);
+            lastCreatedAt = utc(last.createdAt());
+            lastId = last.id();
+        }
+    }
+
+    @EventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        if (event.userId() == null || event.createdAt() == null) return;
+        // compared on the stored timestamps, as the replay does
+        Boolean returning = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM orders p JOIN orders o ON o.id = ? " +
+                "WHERE p.user_id = o.user_id AND (p.created_at < o.created_at OR (p.created_at = o.created_at AND p.id < o.id)))",
+                Boolean.class, event.orderId());
+        List<Long> productIds = event.lines().stream().map(OrderPlacedEvent.Line::productId).filter(id -> id != null).toList();
+        record(event.userId(), event.createdAt(), productIds, Boolean.TRUE.equals(returning));
+    }
+
+    private void record(long userId, Instant createdAt, List<Long> productIds, boolean returning) {
+        String day = LocalDate.ofInstant(createdAt, zone).toString();
+        synchronized (cache) {
+            add(new SketchId(BUYERS, ALL), userId);
+            add(new SketchId(dayBuyers, day), userId);
+            if (returning) {
+                add(new SketchId(RETURNING, ALL), userId);
+                add(new SketchId(dayReturning, day), userId);
+            }
+            for (Long productId : productIds) add(new SketchId(PRODUCT_BUYERS, productId.toString()), userId);
+            evict();
+        }
+        ordersApplied.increment();
+    }
+
+    private void add(SketchId id, long userId) {
+        Entry entry = entry(id);
+        if (entry.sketch.add(userId)) entry.version++;
+    }
+
+    // the cached sketch, loaded on a miss; caller holds the cache lock
+    private Entry entry(SketchId id) {
+        Entry entry = cache.get(id);
+        if (entry == null) {
+            List<byte[]> stored = jdbcTemplate.query("SELECT registers FROM customer_sketches WHERE kind = ? AND sketch_key = ?",
+                    (rs, i) -> rs.getBytes(1), id.kind(), id.key());
+            entry = new Entry(stored.isEmpty() ? new HyperLogLog(precision(id.kind())) : HyperLogLog.fromBytes(stored.get(0)));
+            cache.put(id, entry);
+        }
+        return entry;
+    }
+
+    // drops the least recently used sketches that have been written out
+    private void evict() {
+        Iterator<Entry> entries = cache.values().iterator();
+        while (cache.size() > cacheSize && entries.hasNext()) {
+            if (!entries.next().dirty()) entries.remove();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.customers.flush-interval-ms:10000}")
+    public void flush() {
+        // half-built sketches are not written: a restart then rebuilds instead of trusting them
+        if (!built) return;
+        LocalDateTime now = utc(Instant.now());
+        List<Object[]> rows = new ArrayList<>();
+        Map<SketchId, Long> versions = new HashMap<>();
+        synchronized (cache) {
+            cache.forEach((id, entry) -> {
+                if (!entry.dirty()) return;
+                rows.add(new Object[]{id.kind(), id.key(), entry.sketch.toBytes(), now});
+                versions.put(id, entry.version);
+            });
+        }
+        if (rows.isEmpty()) return;
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                "INSERT INTO customer_sketches (kind, sketch_key, registers, updated_at) VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE registers = VALUES(registers), updated_at = VALUES(updated_at)", rows));
+        synchronized (cache) {
+            versions.forEach((id, version) -> {
+                Entry entry = cache.get(id);
+                if (entry != null && version > entry.flushedVersion) entry.flushedVersion = version;
+            });
+            evict();
+        }
+        flushes.increment();
+        lastFlushedAt = Instant.now();
+    }
+
+    /** Distinct buyers of all time. */
+    public UniqueCustomers allTime() {
+        HyperLogLog buyers;
+        HyperLogLog returning;
+        synchronized (cache) {
+            buyers = entry(new SketchId(BUYERS, ALL)).sketch.copy();
+            returning = entry(new SketchId(RETURNING, ALL)).sketch.copy();
+        }
+        return result(null, null, buyers, returning);
+    }
+
+    /** Distinct buyers of the dates [from, to), merged from the day sketches. */
+    public UniqueCustomers between(LocalDate from, LocalDate to) {
+        if (!from.isBefore(to)) throw new IllegalArgumentException("from must be before to");
+        if (ChronoUnit.DAYS.between(from, to) > MAX_DAYS) throw new IllegalArgumentException("At most " + MAX_DAYS + " days");
+        return result(from, to, mergeDays(dayBuyers, from, to), mergeDays(dayReturning, from, to));
+    }
+
+    public ProductReach productReach(Long productId) {
+        HyperLogLog sketch = new HyperLogLog(PRODUCT_PRECISION);
+        String key = productId.toString();
+        jdbcTemplate.query("SELECT registers FROM customer_sketches WHERE kind = ? AND sketch_key = ?",
+                rs -> {
+                    sketch.merge(HyperLogLog.fromBytes(rs.getBytes(1)));
+                }, PRODUCT_BUYERS, key);
+        synchronized (cache) {
+            Entry cached = cache.get(new SketchId(PRODUCT_BUYERS, key));
+            if (cached != null) sketch.merge(cached.sketch);
+        }
+        return new ProductReach(productId, sketch.estimate(), sketch.standardError());
+    }
+
+    // stored and cached sketches are both merged in: a cached one only ever holds more
+    private HyperLogLog mergeDays(String kind, LocalDate from, LocalDate to) {
+        HyperLogLog merged = new HyperLogLog(PRECISION);
+        jdbcTemplate.query("SELECT registers FROM customer_sketches WHERE kind = ? AND sketch_key >= ? AND sketch_key < ?",
+                rs -> {
+                    merged.merge(HyperLogLog.fromBytes(rs.getBytes(1)));
+                }, kind, from.toString(), to.toString());
+        synchronized (cache) {
+            cache.forEach((id, entry) -> {
+                if (id.kind().equals(kind) && id.key().compareTo(from.toString()) >= 0 && id.key().compareTo(to.toString()) < 0) {
+                    merged.merge(entry.sketch);
+                }
+            });
+        }
+        return merged;
+    }
+
+    public Stats stats() {
+        synchronized (cache) {
+            int dirty = (int) cache.values().stream().filter(Entry::dirty).count();
+            return new Stats(built, cache.size(), dirty, ordersApplied.sum(), flushes.sum(), lastFlushedAt);
+        }
+    }
+
+    private UniqueCustomers result(LocalDate from, LocalDate to, HyperLogLog buyers, HyperLogLog returning) {
+        long customers = buyers.estimate();
+        // both are estimates: keep the rate within what it can be
+        long returningCustomers = Math.min(returning.estimate(), customers);
+        double rate = customers == 0 ? 0 : (double) returningCustomers / customers;
+        return new UniqueCustomers(zone.getId(), from, to, customers, returningCustomers, rate, buyers.standardError(), built);
+    }
+
+    private static int precision(String kind) {
+        return kind.equals(PRODUCT_BUYERS) ? PRODUCT_PRECISION : PRECISION;
+    }
+}
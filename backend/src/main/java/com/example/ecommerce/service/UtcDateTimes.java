@@ -0,0 +1,19 @@
+package com.example.ecommerce.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Instants are stored as UTC wall-clock DATETIMEs, matching how Hibernate writes them; this turns
+ * one into the value to bind in plain JDBC.
+ */
+public final class UtcDateTimes {
+
+    private UtcDateTimes() {
+    }
+
+    public static LocalDateTime utc(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
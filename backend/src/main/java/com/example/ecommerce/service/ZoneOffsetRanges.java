@@ -0,0 +1,30 @@
+package com.example.ecommerce.service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an interval where a zone's UTC offset changes, so a query over each piece can turn UTC
+ * timestamps into local ones by adding a single offset.
+ */
+final class ZoneOffsetRanges {
+
+    record Range(Instant from, Instant to, int offsetSeconds) {}
+
+    private ZoneOffsetRanges() {
+    }
+
+    static List<Range> split(ZoneId zone, Instant from, Instant end) {
+        List<Range> ranges = new ArrayList<>();
+        while (from.isBefore(end)) {
+            ZoneOffsetTransition transition = zone.getRules().nextTransition(from);
+            Instant to = transition == null || transition.getInstant().isAfter(end) ? end : transition.getInstant();
+            ranges.add(new Range(from, to, zone.getRules().getOffset(from).getTotalSeconds()));
+            from = to;
+        }
+        return ranges;
+    }
+}
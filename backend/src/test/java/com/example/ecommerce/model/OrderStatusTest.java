@@ -0,0 +1,40 @@
+package com.example.ecommerce.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.example.ecommerce.model.OrderStatus.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderStatusTest {
+    private static final Map<OrderStatus, Set<OrderStatus>> ALLOWED = Map.of(
+            PENDING, EnumSet.of(PLACED, CANCELED),
+            PLACED, EnumSet.of(PAID, SHIPPED, CANCELED),
+            PAID, EnumSet.of(SHIPPED, CANCELED),
+            SHIPPED, EnumSet.of(DELIVERED),
+            DELIVERED, EnumSet.noneOf(OrderStatus.class),
+            CANCELED, EnumSet.noneOf(OrderStatus.class));
+
+    @Test
+    void canBecomeOnlyTheAllowedStatuses() {
+        for (OrderStatus from : values()) {
+            for (OrderStatus to : values()) {
+                assertThat(from.canBecome(to)).as("%s -> %s", from, to).isEqualTo(ALLOWED.get(from).contains(to));
+            }
+        }
+    }
+
+    @Test
+    void sourcesOfMatchesCanBecome() {
+        for (OrderStatus to : values()) {
+            Set<OrderStatus> sources = EnumSet.noneOf(OrderStatus.class);
+            for (OrderStatus from : values()) {
+                if (from.canBecome(to)) sources.add(from);
+            }
+            assertThat(OrderStatus.sourcesOf(to)).as("sources of %s", to).isEqualTo(sources);
+        }
+    }
+}
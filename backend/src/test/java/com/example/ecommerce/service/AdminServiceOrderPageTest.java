@@ -0,0 +1,79 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.CursorPageDTO;
+import com.example.ecommerce.dto.OrderSummary;
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.User;
+import com.example.ecommerce.repository.CartItemRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AdminServiceOrderPageTest {
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Test
+    void pagesThroughOnlyTheFilteredOrders() {
+        Product product = new Product();
+        product.setName("Filtered item");
+        product.setPrice(new BigDecimal("5.00"));
+        product.setStock(100);
+        product = productRepository.save(product);
+
+        User user = new User();
+        user.setName("Filtered buyer");
+        user.setEmail("filtered@test.local");
+        user.setPasswordHash("x");
+        user.setRole("ROLE_USER");
+        user = userRepository.save(user);
+
+        List<Long> cod = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CartItem item = new CartItem();
+            item.setUser(user);
+            item.setProduct(product);
+            item.setQuantity(1);
+            cartItemRepository.save(item);
+            String method = i % 2 == 0 ? "COD" : "RAZORPAY";
+            Long id = orderService.placeOrder(user.getEmail(), method, FlashSaleService.Admission.NONE).getId();
+            if (method.equals("COD")) cod.add(0, id);
+        }
+
+        AdminService.OrderFilter filter =
+                new AdminService.OrderFilter(null, null, "COD", null, user.getEmail(), null, null);
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<OrderSummary> page = adminService.findOrderPage(filter, cursor, 2);
+            page.items().forEach(summary -> {
+                assertThat(summary.paymentMethod()).isEqualTo("COD");
+                assertThat(summary.itemCount()).isEqualTo(1);
+                seen.add(summary.id());
+            });
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).isEqualTo(cod);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.CartAddResult;
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.User;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.UserRepository;
+import com.example.ecommerce.service.CartService.CartOperation;
+import com.example.ecommerce.service.CartService.CartOperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CartServiceTest {
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void addReportsUnitsCappedByStock() {
+        String email = user("capped@test.local");
+        Long productId = product(5);
+
+        CartAddResult first = cartService.addToCart(email, productId, 3);
+        assertThat(first.item().getQuantity()).isEqualTo(3);
+        assertThat(first.capped()).isFalse();
+
+        CartAddResult second = cartService.addToCart(email, productId, 4);
+        assertThat(second.item().getQuantity()).isEqualTo(5);
+        assertThat(second.added()).isEqualTo(2);
+        assertThat(second.capped()).isTrue();
+    }
+
+    @Test
+    void addNeverLowersALineAboveStock() {
+        String email = user("over-stock@test.local");
+        Long productId = product(5);
+        cartService.addToCart(email, productId, 3);
+        jdbcTemplate.update("UPDATE products SET stock = 2 WHERE id = ?", productId);
+
+        CartAddResult result = cartService.addToCart(email, productId, 1);
+        assertThat(result.item().getQuantity()).isEqualTo(3);
+        assertThat(result.added()).isZero();
+        assertThat(result.capped()).isTrue();
+    }
+
+    @Test
+    void concurrentAddsEachReportTheirOwnUnits() throws Exception {
+        String email = user("concurrent-add@test.local");
+        Long productId = product(100);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CartAddResult>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) results.add(pool.submit(() -> cartService.addToCart(email, productId, 2)));
+            for (Future<CartAddResult> result : results) {
+                assertThat(result.get().added()).isEqualTo(2);
+                assertThat(result.get().capped()).isFalse();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(cartService.getCart(email)).singleElement().extracting(CartItem::getQuantity).isEqualTo(80);
+    }
+
+    @Test
+    void addOfUnknownProductIsNotFound() {
+        String email = user("unknown-product@test.local");
+
+        assertThatThrownBy(() -> cartService.addToCart(email, Long.MAX_VALUE, 1))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void batchChecksStockInTheDatabaseNotTheCache() {
+        String email = user("batch-stock@test.local");
+        Long productId = product(5);
+        productCache.get(productId);
+        // sold elsewhere; the cached product still says 5
+        jdbcTemplate.update("UPDATE products SET stock = 2 WHERE id = ?", productId);
+
+        assertThatThrownBy(() -> cartService.applyBatch(email, List.of(
+                new CartOperation(CartOperationType.ADD, productId, 1),
+                new CartOperation(CartOperationType.SET, productId, 4))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Only 2");
+        assertThat(cartService.getCart(email)).isEmpty();
+
+        List<CartItem> cart = cartService.applyBatch(email, List.of(
+                new CartOperation(CartOperationType.ADD, productId, null),
+                new CartOperation(CartOperationType.ADD, productId, 1)));
+        assertThat(cart).singleElement().extracting(CartItem::getQuantity).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentBatchesOnOneLineAllApply() throws Exception {
+        String email = user("batch-concurrent@test.local");
+        Long productId = product(100);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<CartItem>>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                results.add(pool.submit(() -> cartService.applyBatch(email, List.of(
+                        new CartOperation(CartOperationType.ADD, productId, 2),
+                        new CartOperation(CartOperationType.ADD, productId, 1)))));
+            }
+            for (Future<List<CartItem>> result : results) result.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(cartService.getCart(email)).singleElement().extracting(CartItem::getQuantity).isEqualTo(60);
+    }
+
+    @Test
+    void batchOfUnknownProductIsNotFound() {
+        String email = user("batch-unknown@test.local");
+
+        assertThatThrownBy(() -> cartService.applyBatch(email, List.of(
+                new CartOperation(CartOperationType.ADD, Long.MAX_VALUE, 1))))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(cartService.applyBatch(email, List.of(
+                new CartOperation(CartOperationType.REMOVE, Long.MAX_VALUE, null)))).isEmpty();
+    }
+
+    @Test
+    void batchSetWithoutQuantityIsRejected() {
+        String email = user("batch-null@test.local");
+        Long productId = product(5);
+
+        assertThatThrownBy(() -> cartService.applyBatch(email, List.of(
+                new CartOperation(CartOperationType.SET, productId, null))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private String user(String email) {
+        User user = new User();
+        user.setName("Shopper");
+        user.setEmail(email);
+        user.setPasswordHash("x");
+        user.setRole("ROLE_USER");
+        return userRepository.save(user).getEmail();
+    }
+
+    private Long product(int stock) {
+        Product product = new Product();
+        product.setName("Cart item");
+        product.setPrice(new BigDecimal("3.00"));
+        product.setStock(stock);
+        return productRepository.save(product).getId();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.repository.CartItemRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CheckoutBatcherTest {
+    private final OrderService orderService = mock(OrderService.class);
+
+    private CheckoutBatcher batcher(long timeoutMs) {
+        return new CheckoutBatcher(orderService, mock(CartItemRepository.class), mock(CartWriteBehindStore.class),
+                mock(InventoryService.class), mock(EntityManager.class), mock(PlatformTransactionManager.class),
+                true, 1, 64, timeoutMs);
+    }
+
+    @Test
+    void stuckCheckoutIsRefusedInsteadOfWaitingForever() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.placeOrder(anyString(), anyString(), any())).thenAnswer(call -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new Order();
+        });
+        CheckoutBatcher batcher = batcher(50);
+        try {
+            assertThatThrownBy(() -> batcher.placeOrder("a@example.com", "COD", FlashSaleService.Admission.NONE))
+                    .isInstanceOf(CheckoutBusyException.class);
+            assertThat(batcher.stats().timeouts()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            batcher.stop();
+        }
+    }
+
+    @Test
+    void errorFailsItsBatchOnly() {
+        Order order = new Order();
+        when(orderService.placeOrder(anyString(), anyString(), any()))
+                .thenThrow(new AssertionError("boom"))
+                .thenReturn(order);
+        CheckoutBatcher batcher = batcher(2000);
+        try {
+            assertThatThrownBy(() -> batcher.placeOrder("a@example.com", "COD", FlashSaleService.Admission.NONE))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThat(batcher.placeOrder("a@example.com", "COD", FlashSaleService.Admission.NONE)).isSameAs(order);
+        } finally {
+            batcher.stop();
+        }
+    }
+}
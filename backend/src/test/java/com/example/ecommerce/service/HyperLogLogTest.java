@@ -0,0 +1,56 @@
+package com.example.ecommerce.service;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 10, 14})
+    void sparseSketchSurvivesARoundTrip(int precision) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        sketch.add(1);
+        sketch.add(2);
+
+        byte[] bytes = sketch.toBytes();
+        assertThat(bytes[1]).isEqualTo(SPARSE);
+        assertRoundTrip(sketch, bytes);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 10, 14})
+    void denseSketchSurvivesARoundTrip(int precision) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (long i = 0; i < 200_000; i++) sketch.add(i);
+
+        byte[] bytes = sketch.toBytes();
+        assertThat(bytes[1]).isEqualTo(DENSE);
+        assertRoundTrip(sketch, bytes);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 10, 14})
+    void estimateIsWithinThreeStandardErrors(int precision) {
+        long distinct = 100_000;
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (long i = 0; i < distinct; i++) {
+            sketch.add(i);
+            sketch.add(i); // repeats change nothing
+        }
+
+        assertThat((double) sketch.estimate())
+                .isCloseTo(distinct, within(3 * sketch.standardError() * distinct));
+    }
+
+    private static void assertRoundTrip(HyperLogLog sketch, byte[] bytes) {
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+        assertThat(restored.precision()).isEqualTo(sketch.precision());
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+    }
+}
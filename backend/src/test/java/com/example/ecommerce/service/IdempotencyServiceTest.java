@@ -0,0 +1,57 @@
+package com.example.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+    private static final Map<String, String> REQUEST = Map.of("paymentMethod", "COD");
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void abandonedClaimIsTakenOverOnceItsLeaseRunsOut() {
+        AtomicInteger runs = new AtomicInteger();
+        String key = "abandoned-" + System.nanoTime();
+        // first attempt: the claim is written, then the instance dies before storing a response
+        ResponseEntity<?> crashed = idempotencyService.execute("orders", "lease@test.local", key, REQUEST, () -> {
+            jdbcTemplate.update("UPDATE idempotency_keys SET claim_token = 'crashed' WHERE response_status IS NULL");
+            return ResponseEntity.internalServerError().build();
+        });
+        assertThat(crashed.getStatusCode().value()).isEqualTo(500);
+        // the 5xx path could not release the foreign token, so the claim is still there
+        assertThat(execute(key, runs).getStatusCode().value()).isEqualTo(409);
+        assertThat(runs).hasValue(0);
+
+        jdbcTemplate.update("UPDATE idempotency_keys SET expires_at = ? WHERE claim_token = 'crashed'",
+                LocalDateTime.now(ZoneOffset.UTC).minusSeconds(1));
+
+        assertThat(execute(key, runs).getStatusCode().value()).isEqualTo(200);
+        assertThat(runs).hasValue(1);
+        ResponseEntity<?> replayed = execute(key, runs);
+        assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(runs).hasValue(1);
+    }
+
+    private ResponseEntity<?> execute(String key, AtomicInteger runs) {
+        return idempotencyService.execute("orders", "lease@test.local", key, REQUEST, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.ok(Map.of("status", "placed"));
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.User;
+import com.example.ecommerce.repository.CartItemRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class InventoryServiceConcurrencyTest {
+    private static final int BUYERS = 60;
+    private static final int STOCK = 17;
+    private static final int THREADS = 24;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        Product product = new Product();
+        product.setName("Last units");
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStock(STOCK);
+        Long productId = productRepository.save(product).getId();
+
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            User user = new User();
+            user.setName("Buyer " + i);
+            user.setEmail("oversell-" + i + "@test.local");
+            user.setPasswordHash("x");
+            user.setRole("ROLE_USER");
+            user = userRepository.save(user);
+            CartItem item = new CartItem();
+            item.setUser(user);
+            item.setProduct(productRepository.getReferenceById(productId));
+            item.setQuantity(1);
+            cartItemRepository.save(item);
+            emails.add(user.getEmail());
+        }
+
+        AtomicInteger lowestStock = new AtomicInteger(STOCK);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                Integer stock = jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+                lowestStock.accumulateAndGet(stock, Math::min);
+            }
+        });
+        watcher.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+        for (String email : emails) {
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    orderService.placeOrder(email, "COD", FlashSaleService.Admission.NONE);
+                    placed.incrementAndGet();
+                } catch (InsufficientStockException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) result.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+        running.set(false);
+        watcher.join();
+
+        Integer stock = jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+        Integer sold = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE product_id = ?", Integer.class, productId);
+        assertThat(placed.get()).isEqualTo(STOCK);
+        assertThat(rejected.get()).isEqualTo(BUYERS - STOCK);
+        assertThat(sold).isEqualTo(STOCK);
+        assertThat(stock).isZero();
+        assertThat(lowestStock.get()).isGreaterThanOrEqualTo(0);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.User;
+import com.example.ecommerce.repository.CartItemRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class OrderServicePaymentTest {
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void paymentForPendingOrderPlacesIt() {
+        Order order = placeOnlineOrder("paid@test.local", 5);
+
+        assertThat(orderService.markPaid(order.getId(), email(order), "rzp_order", "rzp_pay", "sig")).isTrue();
+        assertThat(orderService.markPaid(order.getId(), email(order), "rzp_order", "rzp_pay", "sig")).isFalse();
+
+        Order paid = orderService.findById(order.getId());
+        assertThat(paid.getStatus()).isEqualTo("PLACED");
+        assertThat(paid.getPaymentStatus()).isEqualTo("PAID");
+    }
+
+    @Test
+    void paymentMustBeMadeForTheOrder() {
+        Order order = placeOnlineOrder("other@test.local", 5);
+        Order other = placeOnlineOrder("victim@test.local", 5);
+
+        // a valid payment for one order cannot pay another, nor someone else's
+        assertThatThrownBy(() -> orderService.markPaid(order.getId(), email(order), "rzp_other_order", "rzp_pay", "sig"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> orderService.markPaid(other.getId(), email(order), "rzp_order", "rzp_pay", "sig"))
+                .hasMessage("Order not found");
+
+        assertThat(orderService.findById(order.getId()).getPaymentStatus()).isEqualTo("PENDING");
+        assertThat(orderService.findById(other.getId()).getPaymentStatus()).isEqualTo("PENDING");
+    }
+
+    @Test
+    void latePaymentDoesNotReviveCanceledOrder() {
+        Order order = placeOnlineOrder("late@test.local", 5);
+        Long productId = order.getItems().get(0).getProduct().getId();
+        orderService.cancelOrder(order.getId());
+
+        assertThatThrownBy(() -> orderService.markPaid(order.getId(), email(order), "rzp_order", "rzp_pay", "sig"))
+                .isInstanceOf(IllegalStateException.class);
+
+        Order canceled = orderService.findById(order.getId());
+        assertThat(canceled.getStatus()).isEqualTo("CANCELED");
+        assertThat(canceled.getPaymentStatus()).isEqualTo("PENDING");
+        assertThat(jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId))
+                .isEqualTo(5);
+    }
+
+    @Test
+    void paymentDoesNotMoveShippedOrderBack() {
+        Order order = placeOnlineOrder("shipped@test.local", 5);
+        orderService.markPaid(order.getId(), email(order), "rzp_order", "rzp_pay", "sig");
+        orderService.updateStatus(order.getId(), "SHIPPED");
+
+        assertThatThrownBy(() -> orderService.markPaid(order.getId(), email(order), "rzp_order", "rzp_other", "sig"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(orderService.findById(order.getId()).getStatus()).isEqualTo("SHIPPED");
+    }
+
+    private Order placeOnlineOrder(String email, int stock) {
+        Product product = new Product();
+        product.setName("Paid item");
+        product.setPrice(new BigDecimal("20.00"));
+        product.setStock(stock);
+        product = productRepository.save(product);
+
+        User user = new User();
+        user.setName("Buyer");
+        user.setEmail(email);
+        user.setPasswordHash("x");
+        user.setRole("ROLE_USER");
+        user = userRepository.save(user);
+
+        CartItem item = new CartItem();
+        item.setUser(user);
+        item.setProduct(product);
+        item.setQuantity(1);
+        cartItemRepository.save(item);
+        Order order = orderService.placeOrder(email, "RAZORPAY", FlashSaleService.Admission.NONE);
+        orderService.attachRazorpayOrder(order.getId(), email, "rzp_order");
+        return order;
+    }
+
+    private static String email(Order order) {
+        return order.getUser().getEmail();
+    }
+}
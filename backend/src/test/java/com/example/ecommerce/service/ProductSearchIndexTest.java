@@ -0,0 +1,45 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductSearchHit;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+    @Test
+    void writesDuringRebuildSurviveTheSwap() {
+        ProductRepository repository = mock(ProductRepository.class);
+        ProductSearchIndex index = new ProductSearchIndex(repository);
+        index.index(product(2L, "Bluetooth speaker"));
+
+        // The rebuild reads a snapshot taken before product 3 was created and product 2 deleted
+        when(repository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).thenAnswer(call -> {
+            index.index(product(3L, "Bluetooth headphones"));
+            index.remove(2L);
+            return List.of(product(1L, "Bluetooth keyboard"), product(2L, "Bluetooth speaker"));
+        });
+        index.rebuild();
+
+        assertThat(index.search("bluetooth", 10)).extracting(ProductSearchHit::id)
+                .containsExactlyInAnyOrder(1L, 3L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    private static Product product(Long id, String name) {
+        Product p = new Product();
+        p.setId(id);
+        p.setName(name);
+        p.setPrice(new BigDecimal("10.00"));
+        return p;
+    }
+}
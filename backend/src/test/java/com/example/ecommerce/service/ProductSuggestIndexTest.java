@@ -0,0 +1,61 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductNameView;
+import com.example.ecommerce.dto.ProductSuggestion;
+import com.example.ecommerce.event.OrderPlacedEvent;
+import com.example.ecommerce.repository.OrderItemRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSuggestIndexTest {
+    @Test
+    void writesDuringRebuildSurviveTheSwap() {
+        ProductRepository products = mock(ProductRepository.class);
+        OrderItemRepository orderItems = mock(OrderItemRepository.class);
+        ProductSuggestIndex index = new ProductSuggestIndex(products, orderItems, 100);
+        index.index(2L, "Phone stand");
+
+        // The rebuild reads a snapshot taken before product 3 was created and product 2 deleted
+        when(products.findNamesAfter(anyLong(), any(Limit.class))).thenAnswer(call -> {
+            index.index(3L, "Phone charger");
+            index.remove(2L);
+            return List.of(new ProductNameView(1L, "Phone case"), new ProductNameView(2L, "Phone stand"));
+        });
+        when(orderItems.sumQuantityByProduct()).thenReturn(List.of());
+        index.rebuild();
+
+        assertThat(index.suggest("phone", 10)).extracting(ProductSuggestion::id)
+                .containsExactlyInAnyOrder(1L, 3L);
+    }
+
+    @Test
+    void redeliveredOrderIsCountedOnce() {
+        ProductSuggestIndex index = new ProductSuggestIndex(mock(ProductRepository.class), mock(OrderItemRepository.class), 100);
+        index.index(1L, "Desk lamp");
+        index.index(2L, "Desk mat");
+
+        index.onOrderPlaced(order(10L, 1L, 3));
+        OrderPlacedEvent mat = order(11L, 2L, 2);
+        index.onOrderPlaced(mat);
+        // delivered again after another listener failed
+        index.onOrderPlaced(mat);
+
+        assertThat(index.suggest("desk", 10)).extracting(ProductSuggestion::id).containsExactly(1L, 2L);
+    }
+
+    private static OrderPlacedEvent order(Long orderId, Long productId, int quantity) {
+        return new OrderPlacedEvent(orderId, 1L, "PLACED", "COD", "PENDING", BigDecimal.ONE, Instant.now(),
+                List.of(new OrderPlacedEvent.Line(productId, quantity, BigDecimal.ONE)));
+    }
+}
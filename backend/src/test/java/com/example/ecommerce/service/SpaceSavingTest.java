@@ -0,0 +1,67 @@
+package com.example.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SpaceSavingTest {
+    @Test
+    void mergedCountsBoundTheTrueWeights() {
+        Random random = new Random(42);
+        Map<Long, Long> exact = new HashMap<>();
+        SpaceSaving merged = new SpaceSaving(20);
+        // several partial summaries, as the tracker merges its time slots
+        for (int part = 0; part < 8; part++) {
+            SpaceSaving summary = new SpaceSaving(20);
+            for (int i = 0; i < 5_000; i++) {
+                // skewed keys, a different mix in every part
+                long key = (long) Math.floor(Math.pow(random.nextDouble(), 3) * 200) + part % 3;
+                long weight = 1 + random.nextInt(5);
+                summary.offer(key, weight);
+                exact.merge(key, weight, Long::sum);
+            }
+            merged.merge(summary);
+        }
+
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        assertThat(merged.total()).isEqualTo(total);
+
+        List<SpaceSaving.Counter> top = merged.top(merged.capacity());
+        assertThat(top).hasSize(merged.capacity());
+        Set<Long> tracked = new HashSet<>();
+        for (SpaceSaving.Counter c : top) {
+            long trueWeight = exact.getOrDefault(c.key, 0L);
+            assertThat(c.count - c.error).isLessThanOrEqualTo(trueWeight);
+            assertThat(trueWeight).isLessThanOrEqualTo(c.count);
+            tracked.add(c.key);
+        }
+        exact.forEach((key, weight) -> {
+            if (!tracked.contains(key)) assertThat(weight).isLessThanOrEqualTo(merged.floor());
+        });
+    }
+
+    @Test
+    void countsAreExactWhileUnderCapacity() {
+        SpaceSaving a = new SpaceSaving(10);
+        SpaceSaving b = new SpaceSaving(10);
+        a.offer(1, 3);
+        a.offer(2, 1);
+        b.offer(1, 2);
+        b.offer(3, 4);
+        a.merge(b);
+
+        assertThat(a.top(10)).extracting(c -> c.key, c -> c.count, c -> c.error)
+                .containsExactly(tuple(1L, 5L, 0L),
+                        tuple(3L, 4L, 0L),
+                        tuple(2L, 1L, 0L));
+        assertThat(a.floor()).isZero();
+    }
+}
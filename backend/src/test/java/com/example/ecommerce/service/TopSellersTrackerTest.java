@@ -0,0 +1,59 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.TopSellers;
+import com.example.ecommerce.event.OrderPlacedEvent;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TopSellersTrackerTest {
+    @Autowired
+    @Qualifier("exportDataSource")
+    private DataSource exportDataSource;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Test
+    void seedFromRollupsDoesNotRecountRedeliveredEvents() {
+        Product product = new Product();
+        product.setName("Rollup seller");
+        product.setPrice(new BigDecimal("4.00"));
+        product.setStock(10);
+        Long productId = productRepository.save(product).getId();
+        OrderPlacedEvent event = new OrderPlacedEvent(Long.MAX_VALUE - 7, 1L, "PLACED", "COD", "PENDING",
+                new BigDecimal("12.00"), Instant.now().minus(3, ChronoUnit.HOURS),
+                List.of(new OrderPlacedEvent.Line(productId, 3, new BigDecimal("4.00"))));
+        salesRollupService.onOrderPlaced(event);
+
+        TopSellersTracker tracker = new TopSellersTracker(exportDataSource, productRepository, salesRollupService,
+                100, 16, 1000);
+        tracker.seed();
+        assertThat(quantity(tracker, productId)).isEqualByComparingTo("3");
+
+        tracker.onOrderPlaced(event);
+        assertThat(quantity(tracker, productId)).isEqualByComparingTo("3");
+        assertThat(tracker.stats().duplicatesSkipped()).isEqualTo(1);
+    }
+
+    private static BigDecimal quantity(TopSellersTracker tracker, Long productId) {
+        TopSellers top = tracker.top("24h", "quantity", 16);
+        return top.items().stream().filter(i -> i.productId().equals(productId))
+                .map(TopSellers.Item::estimate).findFirst().orElse(BigDecimal.ZERO);
+    }
+}
@@ -67,7 +67,7 @@ export default function Checkout() {
 
       // Create Razorpay order: amount in RUPEES
       const amountInRupees = Number(total.toFixed(2))
-      const paymentRes = await api.post('/api/payment/create-order', { amount: amountInRupees })
+      const paymentRes = await api.post('/api/payment/create-order', { amount: amountInRupees, orderId })
       const razorpayOrderId = paymentRes.data?.orderId
 
       if (!razorpayOrderId) {